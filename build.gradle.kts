@@ -9,11 +9,37 @@ repositories {
     mavenCentral()
 }
 
+// Benchmarks live in src/jmh/java, next to the main classes' package so they can reach package-private stages.
+// They are not part of `build`; run them with `gradle jmh`.
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+val jmhVersion = "1.37"
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// Every result comes with its allocation rate from the GC profiler. Pass more JMH options with -PjmhArgs, e.g.
+// gradle jmh -PjmhArgs="ScannerBenchmark -p size=1KB,1MB,100MB"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks in src/jmh."
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.path)
+    (project.findProperty("jmhArgs") as String?)?.let { args(it.split(" ").filter(String::isNotBlank)) }
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+}
@@ -0,0 +1,37 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * The same statements evaluated over and over, by the visitor Interpreter and by closures ClosureCompiler built
+ * once in setup, as a CompiledProgram on the closure engine runs them. InterpreterBenchmark with -p engine=closure
+ * measures conversion and one run together.
+ * */
+@State(Scope.Thread)
+public class ClosureBenchmark extends StageBenchmark {
+    private Interpreter interpreter;
+    private ClosureCompiler closures;
+    private ClosureCompiler.Program compiled;
+
+    @Setup
+    public void compile(Corpus corpus) {
+        interpreter = new Interpreter(Corpus.session());
+        closures = new ClosureCompiler(Corpus.session());
+        compiled = ClosureCompiler.compile(corpus.statements);
+    }
+
+    @Benchmark
+    public Object visitor(Corpus corpus) {
+        interpreter.interpret(corpus.statements);
+        return interpreter;
+    }
+
+    @Benchmark
+    public Object closures() {
+        closures.run(compiled);
+        return closures;
+    }
+}
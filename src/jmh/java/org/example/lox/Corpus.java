@@ -0,0 +1,56 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+
+/*
+ * The shared input of every benchmark: one generated program per size, with its tokens and statements
+ * prepared up front so each benchmark only measures its own stage.
+ * Sizes are swept with -p size=1KB,1MB,100MB.
+ * */
+@State(Scope.Benchmark)
+public class Corpus {
+    static final long SEED = 20240601L;
+
+    @Param({"1KB", "64KB", "1MB"})
+    public String size;
+
+    String source;
+    TokenBuffer tokens;
+    List<Stmt> statements;
+
+    @Setup
+    public void generate() {
+        source = ProgramGenerator.generate(ProgramGenerator.parseSize(size), SEED);
+        tokens = new Scanner(source, session()).scanTokens();
+        statements = new Parser(tokens, session()).parse();
+        if (statements.isEmpty()) throw new IllegalStateException("The generated program doesn't parse.");
+    }
+
+    // Output goes nowhere, through the same buffered sink jlox prints with.
+    static Session session() {
+        return session("tree");
+    }
+
+    static Session session(String engine) {
+        return new Session(OutputSink.of(Channels.newChannel(OutputStream.nullOutputStream()), false), FAIL, engine);
+    }
+
+    private static final ErrorCollector FAIL = new ErrorCollector() {
+        @Override
+        public void syntaxError(int line, String where, String message) {
+            throw new IllegalStateException("[line " + line + "] Error" + where + ": " + message);
+        }
+
+        @Override
+        public void runtimeError(int line, String message) {
+            throw new IllegalStateException(message + " [line " + line + "]");
+        }
+    };
+}
@@ -0,0 +1,67 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/*
+ * Visitor dispatch (Interpreter over Expr/Stmt) against instanceof dispatch down a sealed hierarchy
+ * (SealedInterpreter over records), on expressions nested `depth` deep that mix every node type:
+ *
+ *     -(1 + (2 * -(3 - ...)))
+ *
+ * Both evaluate the same way apart from dispatch, and the statements are expression statements, so nothing
+ * is printed. The record tree is converted once in setup.
+ * */
+@State(Scope.Thread)
+public class DispatchBenchmark extends StageBenchmark {
+    private static final int STATEMENTS = 64;
+    private static final String[] OPERATORS = {"+", "*", "-", "/"};
+
+    @Param({"8", "64", "512"})
+    public int depth;
+
+    private List<Stmt> statements;
+    private List<SealedStmt> records;
+    private Interpreter visitor;
+    private SealedInterpreter sealed;
+
+    @Setup
+    public void build() {
+        var source = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            source.append(nested(depth, i)).append(";\n");
+        }
+        statements = new Parser(new Scanner(source, Corpus.session()).scanTokens(), Corpus.session()).parse();
+        records = SealedInterpreter.convert(statements);
+        visitor = new Interpreter(Corpus.session());
+        sealed = new SealedInterpreter(Corpus.session());
+    }
+
+    private static String nested(int depth, int seed) {
+        var expr = new StringBuilder();
+        for (int level = 0; level < depth; level++) {
+            if (level % 2 == 0) expr.append('-');
+            expr.append("(").append(seed + level + 1).append(' ').append(OPERATORS[level % OPERATORS.length]).append(" ");
+        }
+        expr.append(seed);
+        expr.append(")".repeat(depth));
+        return expr.toString();
+    }
+
+    @Benchmark
+    public Object visitor() {
+        visitor.interpret(statements);
+        return visitor;
+    }
+
+    @Benchmark
+    public Object sealed() {
+        sealed.run(records);
+        return sealed;
+    }
+}
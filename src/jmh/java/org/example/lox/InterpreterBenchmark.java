@@ -0,0 +1,19 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class InterpreterBenchmark extends StageBenchmark {
+    @Param({"tree", "vm", "specializing", "jvm", "closure", "sealed", "flat"})
+    public String engine;
+
+    @Benchmark
+    public Object evaluate(Corpus corpus) {
+        Session session = Corpus.session(engine);
+        session.interpret(corpus.statements);
+        return session;
+    }
+}
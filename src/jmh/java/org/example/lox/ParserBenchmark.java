@@ -0,0 +1,11 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+
+public class ParserBenchmark extends StageBenchmark {
+    @Benchmark
+    public Object parse(Corpus corpus) {
+        return new Parser(corpus.tokens, Corpus.session()).parse();
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.lox;
+
+import java.util.SplittableRandom;
+
+/*
+ * Builds the benchmark corpus: valid Lox programs of a requested size that always come out the same for the same
+ * size and seed, so results from different runs and different machines compare.
+ *
+ * Programs mix print and expression statements over arithmetic, comparisons, equality, negation, string
+ * concatenation and groupings, with every operator applied to operands of the right type, so they run to the
+ * end without a runtime error.
+ * */
+final class ProgramGenerator {
+    private static final String[] WORDS = {"lox", "tree", "walk", "token", "scan", "parse", "byte", "code"};
+    private static final String[] ARITHMETIC = {" + ", " - ", " * ", " / "};
+    private static final String[] COMPARISON = {" < ", " <= ", " > ", " >= "};
+
+    private final SplittableRandom random;
+
+    private ProgramGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    // A program of at least `bytes` bytes (and less than one statement more).
+    static String generate(long bytes, long seed) {
+        var generator = new ProgramGenerator(seed);
+        var program = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, bytes + 128));
+        int line = 0;
+        while (program.length() < bytes) {
+            generator.statement(program, line++);
+        }
+        return program.toString();
+    }
+
+    // Sizes as benchmark parameters: 1KB, 64KB, 1MB, 100MB...
+    static long parseSize(String size) {
+        String digits = size.replaceAll("[^0-9]", "");
+        long value = Long.parseLong(digits);
+        if (size.endsWith("KB")) return value << 10;
+        if (size.endsWith("MB")) return value << 20;
+        if (size.endsWith("GB")) return value << 30;
+        return value;
+    }
+
+    private void statement(StringBuilder out, int line) {
+        if (random.nextInt(4) == 0) {
+            out.append("print ");
+        }
+        switch (random.nextInt(5)) {
+            case 0, 1 -> number(out, 3);
+            case 2 -> bool(out, 3);
+            case 3 -> string(out, 3);
+            default -> equality(out);
+        }
+        out.append(line % 8 == 7 ? ";\n\n" : ";\n");
+    }
+
+    private void number(StringBuilder out, int depth) {
+        switch (depth == 0 ? 0 : random.nextInt(4)) {
+            case 0 -> out.append(random.nextInt(1000)).append(random.nextInt(4) == 0 ? ".5" : "");
+            case 1 -> {
+                out.append('-');
+                number(out, depth - 1);
+            }
+            case 2 -> {
+                out.append('(');
+                number(out, depth - 1);
+                out.append(')');
+            }
+            default -> {
+                number(out, depth - 1);
+                out.append(ARITHMETIC[random.nextInt(ARITHMETIC.length)]);
+                number(out, depth - 1);
+            }
+        }
+    }
+
+    private void bool(StringBuilder out, int depth) {
+        switch (depth == 0 ? 0 : random.nextInt(3)) {
+            case 0 -> out.append(random.nextBoolean() ? "true" : "false");
+            case 1 -> {
+                // ! binds tighter than a comparison.
+                out.append("!(");
+                bool(out, depth - 1);
+                out.append(')');
+            }
+            default -> {
+                number(out, depth - 1);
+                out.append(COMPARISON[random.nextInt(COMPARISON.length)]);
+                number(out, depth - 1);
+            }
+        }
+    }
+
+    private void string(StringBuilder out, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            out.append('"').append(WORDS[random.nextInt(WORDS.length)]).append('"');
+            return;
+        }
+        string(out, depth - 1);
+        out.append(" + ");
+        string(out, depth - 1);
+    }
+
+    private void equality(StringBuilder out) {
+        switch (random.nextInt(3)) {
+            case 0 -> {
+                number(out, 2);
+                out.append(random.nextBoolean() ? " == " : " != ");
+                number(out, 2);
+            }
+            case 1 -> {
+                string(out, 1);
+                out.append(random.nextBoolean() ? " == " : " != ");
+                string(out, 1);
+            }
+            default -> out.append("nil == ").append(random.nextBoolean() ? "nil" : "false");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * The whole path a script takes through `jlox script.lox`: Session.run scans, parses and interprets. dumpAst is
+ * what `--dump-ast` adds on top, written to a Writer that throws the text away.
+ * */
+public class RunBenchmark extends StageBenchmark {
+    @Benchmark
+    public Object run(Corpus corpus) {
+        Session session = Corpus.session();
+        session.run(corpus.source);
+        return session;
+    }
+
+    @Benchmark
+    public Object dumpAst(Corpus corpus) throws IOException {
+        Writer out = Writer.nullWriter();
+        new AstDumper(out, AstDumper.Format.SEXPR).dump(corpus.statements);
+        return out;
+    }
+}
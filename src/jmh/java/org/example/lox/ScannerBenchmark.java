@@ -0,0 +1,10 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class ScannerBenchmark extends StageBenchmark {
+    @Benchmark
+    public Object tokenize(Corpus corpus) {
+        return new Scanner(corpus.source, Corpus.session()).scanTokens();
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.lox;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Settings shared by the per-stage benchmarks. Every benchmark runs once over the whole program per invocation,
+ * so throughput is in programs per second; divide by the corpus size for bytes per second.
+ * Run them with `gradle jmh`, which adds -prof gc for allocation rates.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public abstract class StageBenchmark {
+}
@@ -0,0 +1,321 @@
+package org.example.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Parsed programs kept on disk, so a script that hasn't changed since its last run skips the Scanner and Parser.
+ *
+ * An entry is named after the SHA-256 of the script's bytes and holds its statements in pre-order: one tag byte
+ * per node followed by its fields. Operators are stored as their TokenType and line (their lexeme is fixed),
+ * literals as their value. Entries are only written for programs without syntax errors, and are written to a
+ * temporary file first and then moved into place, so a reader never sees half an entry. An entry that can't be
+ * read, for instance one written by an older format, counts as a miss and gets overwritten. Writing and reading
+ * keep the nodes still to be done on the heap, as AstDumper does, so any depth the Parser accepts can be cached.
+ *
+ * A hash-consed program is written out as a tree, and read back through a HashConser, which shares its equal
+ * subtrees again just as parsing did. Its shared nodes carry the line of their first occurrence, so it is kept
+ * apart from the same script parsed without one, under the key with "-hash-cons" added.
+ *
+ * Whoever can write to the directory decides what a cached script runs as, so `--cache` uses one of the user's
+ * own, and a directory this creates is readable and writable by its owner only.
+ * */
+final class AstCache {
+    private static final int MAGIC = 0x4C4F5841; // "LOXA"
+    private static final int VERSION = 1;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private static final byte EXPRESSION = 0, PRINT = 1;
+    private static final byte BINARY = 2, GROUPING = 3, LITERAL = 4, UNARY = 5;
+    private static final byte NIL = 0, FALSE = 1, TRUE = 2, NUMBER = 3, STRING = 4;
+
+    private final Path directory;
+    // Sessions on the server share one cache.
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // Where `--cache` keeps its entries: $XDG_CACHE_HOME/lox, or ~/.cache/lox.
+    static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome != null && !cacheHome.isEmpty()) return Paths.get(cacheHome, "lox");
+        return Paths.get(System.getProperty("user.home"), ".cache", "lox");
+    }
+
+    static String key(ByteBuffer source, boolean hashCons) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source.duplicate());
+            return HexFormat.of().formatHex(digest.digest()) + (hashCons ? "-hash-cons" : "");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is always available", e);
+        }
+    }
+
+    // The statements cached under `key`, or null. With `nodes`, expression nodes come from there, as the Parser's do.
+    List<Stmt> load(String key, HashConser nodes) {
+        Path entry = directory.resolve(key + ".ast");
+        if (!Files.isRegularFile(entry)) {
+            misses.increment();
+            return null;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                misses.increment();
+                return null;
+            }
+            List<Stmt> statements = new Reader(in, Files.size(entry), nodes).program();
+            hits.increment();
+            bytesRead.add(Files.size(entry));
+            return statements;
+        } catch (IOException | RuntimeException e) {
+            misses.increment();
+            return null;
+        }
+    }
+
+    // Not being able to cache only costs the next run a parse, so the caller just reports an IOException.
+    void store(String key, List<Stmt> statements) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectories(directory,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                new Writer(out).program(statements);
+            }
+            bytesWritten.add(Files.size(temporary));
+            Files.move(temporary, directory.resolve(key + ".ast"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            writes.increment();
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    String report() {
+        return String.format("[cache] %d hits, %d misses, %d writes, %d bytes read, %d bytes written",
+                hits.sum(), misses.sum(), writes.sum(), bytesRead.sum(), bytesWritten.sum());
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        // Nodes still to be written, in the order they come out.
+        private final Deque<Expr> pending = new ArrayDeque<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void program(List<Stmt> statements) throws IOException {
+            out.writeInt(statements.size());
+            for (Stmt stmt : statements) {
+                boolean print = stmt instanceof Stmt.Print;
+                out.writeByte(print ? PRINT : EXPRESSION);
+                expression(print ? ((Stmt.Print) stmt).expression : ((Stmt.Expression) stmt).expression);
+            }
+        }
+
+        private void expression(Expr root) throws IOException {
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Expr expr = pending.pop();
+                if (expr instanceof Expr.Binary binary) {
+                    out.writeByte(BINARY);
+                    operator(binary.operator);
+                    pending.push(binary.right);
+                    pending.push(binary.left);
+                } else if (expr instanceof Expr.Grouping grouping) {
+                    out.writeByte(GROUPING);
+                    pending.push(grouping.expression);
+                } else if (expr instanceof Expr.Unary unary) {
+                    out.writeByte(UNARY);
+                    operator(unary.operator);
+                    pending.push(unary.right);
+                } else {
+                    out.writeByte(LITERAL);
+                    literal(((Expr.Literal) expr).value);
+                }
+            }
+        }
+
+        private void literal(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NIL);
+            } else if (value instanceof Boolean b) {
+                out.writeByte(b ? TRUE : FALSE);
+            } else if (value instanceof Double d) {
+                out.writeByte(NUMBER);
+                out.writeDouble(d);
+            } else {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING);
+                out.writeInt(text.length);
+                out.write(text);
+            }
+        }
+
+        private void operator(Token operator) throws IOException {
+            out.writeByte(operator.type.ordinal());
+            out.writeInt(operator.line);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final long size;
+        // Equal literals share one instance, as they do when they come from the Scanner's SymbolTable.
+        private final Map<Object, Object> constants = new HashMap<>();
+        private final HashConser nodes;
+
+        // `size` is the entry's, which no count or length in it can be more than.
+        Reader(DataInputStream in, long size, HashConser nodes) {
+            this.in = in;
+            this.size = size;
+            this.nodes = nodes;
+        }
+
+        // Checked before anything is allocated for it, so a corrupt entry is a miss and not an OutOfMemoryError.
+        private int length() throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > size) throw new IOException("Bad length " + length + ".");
+            return length;
+        }
+
+        List<Stmt> program() throws IOException {
+            int count = length();
+            List<Stmt> statements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                statements.add(statement());
+            }
+            return statements;
+        }
+
+        private Stmt statement() throws IOException {
+            byte tag = in.readByte();
+            return switch (tag) {
+                case EXPRESSION -> new Stmt.Expression(expression());
+                case PRINT -> new Stmt.Print(expression());
+                default -> throw new IOException("Unknown statement tag " + tag + ".");
+            };
+        }
+
+        // An operator node read up to its operands, which come after it.
+        private static final class Open {
+            final byte tag;
+            final Token operator;
+            Expr left;
+
+            Open(byte tag, Token operator) {
+                this.tag = tag;
+                this.operator = operator;
+            }
+        }
+
+        private Expr expression() throws IOException {
+            Deque<Open> open = new ArrayDeque<>();
+            while (true) {
+                byte tag = in.readByte();
+                Expr done;
+                switch (tag) {
+                    case BINARY, UNARY -> {
+                        open.push(new Open(tag, operator()));
+                        continue;
+                    }
+                    case GROUPING -> {
+                        open.push(new Open(tag, null));
+                        continue;
+                    }
+                    case LITERAL -> done = literalNode(literal());
+                    default -> throw new IOException("Unknown expression tag " + tag + ".");
+                }
+                // A finished node is the operand of the innermost open one, which may finish it in turn.
+                while (!open.isEmpty()) {
+                    Open parent = open.peek();
+                    if (parent.tag == BINARY && parent.left == null) {
+                        parent.left = done;
+                        break;
+                    }
+                    open.pop();
+                    done = switch (parent.tag) {
+                        case BINARY -> binaryNode(parent.left, parent.operator, done);
+                        case GROUPING -> groupingNode(done);
+                        default -> unaryNode(parent.operator, done);
+                    };
+                }
+                if (open.isEmpty()) return done;
+            }
+        }
+
+        private Expr binaryNode(Expr left, Token operator, Expr right) {
+            return nodes == null ? new Expr.Binary(left, operator, right) : nodes.binary(left, operator, right);
+        }
+
+        private Expr groupingNode(Expr expression) {
+            return nodes == null ? new Expr.Grouping(expression) : nodes.grouping(expression);
+        }
+
+        private Expr literalNode(Object value) {
+            return nodes == null ? new Expr.Literal(value) : nodes.literal(value);
+        }
+
+        private Expr unaryNode(Token operator, Expr right) {
+            return nodes == null ? new Expr.Unary(operator, right) : nodes.unary(operator, right);
+        }
+
+        private Token operator() throws IOException {
+            TokenType type = TYPES[in.readUnsignedByte()];
+            return new Token(type, type.lexeme, null, in.readInt());
+        }
+
+        private Object literal() throws IOException {
+            byte kind = in.readByte();
+            return switch (kind) {
+                case NIL -> null;
+                case FALSE -> false;
+                case TRUE -> true;
+                case NUMBER -> constants.computeIfAbsent(in.readDouble(), value -> value);
+                case STRING -> {
+                    byte[] text = new byte[length()];
+                    in.readFully(text);
+                    yield constants.computeIfAbsent(new String(text, StandardCharsets.UTF_8), value -> value);
+                }
+                default -> throw new IOException("Unknown literal kind " + kind + ".");
+            };
+        }
+    }
+}
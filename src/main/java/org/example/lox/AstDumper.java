@@ -0,0 +1,161 @@
+package org.example.lox;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Writes a program's tree to an Appendable in one pass, for `--dump-ast[=sexpr|json]`. Nothing is built up in
+ * memory besides the stack of what is still to be written, which is on the heap, so any depth the Parser accepts
+ * can be dumped.
+ *
+ * sexpr, one statement per line:
+ *     (print (+ 1 (group (- "a"))))
+ * json, an array with one statement per line:
+ *     {"type":"Print","expression":{"type":"Binary","operator":"+","line":1,"left":...,"right":...}}
+ * Literals are written the way Lox prints them, strings quoted. JSON has no NaN or infinities, so the Optimizer's
+ * 0/0 and 1/0 come out as the strings "NaN" and "Infinity".
+ * */
+final class AstDumper {
+    enum Format {
+        SEXPR, JSON;
+
+        // The format for a --dump-ast=NAME name, or null if there's none by that name.
+        static Format named(String name) {
+            return switch (name) {
+                case "sexpr" -> SEXPR;
+                case "json" -> JSON;
+                default -> null;
+            };
+        }
+    }
+
+    private final Appendable out;
+    private final Format format;
+    // Text still to be written and nodes still to be dumped, in the order they come out.
+    private final Deque<Object> pending = new ArrayDeque<>();
+
+    AstDumper(Appendable out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    void dump(List<Stmt> statements) throws IOException {
+        if (format == Format.JSON) out.append("[\n");
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            boolean print = stmt instanceof Stmt.Print;
+            Expr expression = print ? ((Stmt.Print) stmt).expression : ((Stmt.Expression) stmt).expression;
+            if (format == Format.JSON) {
+                out.append(print ? "{\"type\":\"Print\",\"expression\":" : "{\"type\":\"Expression\",\"expression\":");
+                dump(expression);
+                out.append(i < statements.size() - 1 ? "},\n" : "}\n");
+            } else {
+                out.append(print ? "(print " : "(expression ");
+                dump(expression);
+                out.append(")\n");
+            }
+        }
+        if (format == Format.JSON) out.append("]\n");
+    }
+
+    void dump(Expr root) throws IOException {
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object next = pending.pop();
+            if (next instanceof String text) {
+                out.append(text);
+            } else if (format == Format.JSON) {
+                json((Expr) next);
+            } else {
+                sexpr((Expr) next);
+            }
+        }
+    }
+
+    private void sexpr(Expr expr) throws IOException {
+        if (expr instanceof Expr.Binary binary) {
+            out.append('(').append(binary.operator.lexeme).append(' ');
+            pending.push(")");
+            pending.push(binary.right);
+            pending.push(" ");
+            pending.push(binary.left);
+        } else if (expr instanceof Expr.Grouping grouping) {
+            out.append("(group ");
+            pending.push(")");
+            pending.push(grouping.expression);
+        } else if (expr instanceof Expr.Unary unary) {
+            out.append('(').append(unary.operator.lexeme).append(' ');
+            pending.push(")");
+            pending.push(unary.right);
+        } else {
+            literal(((Expr.Literal) expr).value, false);
+        }
+    }
+
+    private void json(Expr expr) throws IOException {
+        if (expr instanceof Expr.Binary binary) {
+            out.append("{\"type\":\"Binary\",");
+            operator(binary.operator);
+            out.append(",\"left\":");
+            pending.push("}");
+            pending.push(binary.right);
+            pending.push(",\"right\":");
+            pending.push(binary.left);
+        } else if (expr instanceof Expr.Grouping grouping) {
+            out.append("{\"type\":\"Grouping\",\"expression\":");
+            pending.push("}");
+            pending.push(grouping.expression);
+        } else if (expr instanceof Expr.Unary unary) {
+            out.append("{\"type\":\"Unary\",");
+            operator(unary.operator);
+            out.append(",\"right\":");
+            pending.push("}");
+            pending.push(unary.right);
+        } else {
+            out.append("{\"type\":\"Literal\",\"value\":");
+            literal(((Expr.Literal) expr).value, true);
+            out.append('}');
+        }
+    }
+
+    private void operator(Token operator) throws IOException {
+        out.append("\"operator\":");
+        string(operator.lexeme);
+        out.append(",\"line\":").append(Integer.toString(operator.line));
+    }
+
+    private void literal(Object value, boolean json) throws IOException {
+        if (value == null) {
+            out.append(json ? "null" : "nil");
+        } else if (value instanceof Double d && json && (d.isNaN() || d.isInfinite())) {
+            string(Values.stringify(value));
+        } else if (value instanceof CharSequence s) {
+            string(s.toString());
+        } else {
+            out.append(Values.stringify(value));
+        }
+    }
+
+    // Quoted and escaped the JSON way, which suits the S-expressions as well.
+    private void string(String text) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+            out.append(text, start, i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.append(text, start, text.length()).append('"');
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * An OutputSink that collects output in one large buffer and hands it to a channel only when the buffer fills up
+ * or on flush(), instead of a synchronized, flushing PrintStream write per print statement.
+ * A line-buffered sink, as the REPL uses, also flushes after every line.
+ *
+ * Text is written as UTF-8, copied char by char while it is ASCII, and a Rope a piece at a time without joining
+ * it up first. Numbers are formatted right into the buffer.
+ * */
+final class ChannelSink implements OutputSink {
+    private static final int CAPACITY = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel channel;
+    private final boolean lineBuffered;
+    private final byte[] buffer = new byte[CAPACITY];
+    private final ByteBuffer pending = ByteBuffer.wrap(buffer);
+    private int count = 0;
+
+    ChannelSink(WritableByteChannel channel, boolean lineBuffered) {
+        this.channel = channel;
+        this.lineBuffered = lineBuffered;
+    }
+
+    @Override
+    public void println(String text) {
+        write(text);
+        endLine();
+    }
+
+    // Values.print hands a Rope here rather than to println(String), which would join it up first.
+    void println(Rope text) {
+        text.forEachPiece(this::write);
+        endLine();
+    }
+
+    private void write(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                write(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            if (count == CAPACITY) drain();
+            buffer[count++] = (byte) c;
+        }
+    }
+
+    @Override
+    public void println(double number) {
+        if (count > CAPACITY - NumberFormat.MAX_LENGTH) drain();
+        count = NumberFormat.write(number, buffer, count);
+        endLine();
+    }
+
+    @Override
+    public void flush() {
+        drain();
+    }
+
+    private void endLine() {
+        write(LINE_SEPARATOR);
+        if (lineBuffered) drain();
+    }
+
+    private void write(byte[] bytes) {
+        for (int written = 0; written < bytes.length; ) {
+            if (count == CAPACITY) drain();
+            int n = Math.min(bytes.length - written, CAPACITY - count);
+            System.arraycopy(bytes, written, buffer, count, n);
+            count += n;
+            written += n;
+        }
+    }
+
+    private void drain() {
+        pending.clear().limit(count);
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A compiled program: the bytecode, the constants it refers to and, for every byte of code,
+ * the source line it came from so runtime errors can report the same line the Interpreter would.
+ * */
+class Chunk {
+    byte[] code = new byte[256];
+    int[] lines = new int[256];
+    int count = 0;
+    // Deepest the operand stack gets while running this chunk, so the VM can size it up front.
+    int maxStack = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    void write(byte b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = b;
+        lines[count] = line;
+        count++;
+    }
+
+    /*
+     * Returns the index of value in the constant pool, adding it if needed.
+     * Equal literals share one slot; Double.equals keeps 0.0 and -0.0 apart.
+     * */
+    int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+}
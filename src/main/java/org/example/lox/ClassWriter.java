@@ -0,0 +1,302 @@
+package org.example.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Just enough of the class file format for JvmCompiler: a constant pool, static methods and their Code.
+ *
+ * The code it is given never branches, so methods need no StackMapTable, and Code tracks the operand stack depth
+ * as instructions are added, so max_stack comes for free. Nothing here checks the code makes sense; the JVM's
+ * verifier does that when the class is defined. What the format can't hold (a constant pool past POOL_LIMIT, a
+ * string constant over 64KB, a method over 64KB) throws Overflow before anything is written, so the class stays
+ * valid and the caller can put the code somewhere else.
+ * */
+final class ClassWriter {
+    static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    // Java 17.
+    private static final int VERSION = 61;
+    // Largest code length, operand stack and string constant a class file allows.
+    static final int LIMIT = 65535;
+    // The pool can hold LIMIT entries; the rest are left for the names of the methods.
+    private static final int POOL_LIMIT = 65000;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<Object, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> methods = new ArrayList<>();
+    private final int thisClass;
+    private final int superClass;
+
+    ClassWriter(String name) {
+        thisClass = classRef(name);
+        superClass = classRef("java/lang/Object");
+    }
+
+    int methodCount() {
+        return methods.size();
+    }
+
+    int utf8(String text) {
+        return utf8(text, POOL_LIMIT);
+    }
+
+    private int utf8(String text, int poolLimit) {
+        if (modifiedUtf8Length(text) > LIMIT) throw new Overflow();
+        return constant(List.of("Utf8", text), poolLimit, () -> {
+            pool.writeByte(1);
+            pool.writeUTF(text);
+            return 1;
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant(List.of("Class", internalName), () -> {
+            pool.writeByte(7);
+            pool.writeShort(name);
+            return 1;
+        });
+    }
+
+    int string(String text) {
+        int utf8 = utf8(text);
+        return constant(List.of("String", text), () -> {
+            pool.writeByte(8);
+            pool.writeShort(utf8);
+            return 1;
+        });
+    }
+
+    int integer(int value) {
+        return constant(List.of("Integer", value), () -> {
+            pool.writeByte(3);
+            pool.writeInt(value);
+            return 1;
+        });
+    }
+
+    // Keyed by bits, so -0.0 and NaNs keep their own entries.
+    int number(double value) {
+        return constant(List.of("Double", Double.doubleToRawLongBits(value)), () -> {
+            pool.writeByte(6);
+            pool.writeDouble(value);
+            return 2;
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant(List.of("NameAndType", name, descriptor), () -> {
+            pool.writeByte(12);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+            return 1;
+        });
+        return constant(List.of("Methodref", owner, name, descriptor), () -> {
+            pool.writeByte(10);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+            return 1;
+        });
+    }
+
+    private static long modifiedUtf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    private interface Entry {
+        // Writes the entry and returns how many pool slots it takes.
+        int write() throws IOException;
+    }
+
+    private int constant(Object key, Entry entry) {
+        return constant(key, POOL_LIMIT, entry);
+    }
+
+    private int constant(Object key, int poolLimit, Entry entry) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        if (poolCount >= poolLimit) throw new Overflow();
+        try {
+            index = poolCount;
+            poolCount += entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, index);
+        return index;
+    }
+
+    void method(int access, String name, String descriptor, Code code) {
+        if (code.length() > LIMIT || code.maxStack() > LIMIT) throw new Overflow();
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name, LIMIT));
+            out.writeShort(utf8(descriptor, LIMIT));
+            out.writeShort(1);
+            out.writeShort(utf8("Code", LIMIT));
+            out.writeInt(12 + code.length());
+            out.writeShort(code.maxStack());
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.length());
+            out.write(code.bytes, 0, code.length());
+            // No exception table, no attributes.
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static final class Overflow extends RuntimeException {
+        Overflow() {
+            super("Doesn't fit in a class file.", null, false, false);
+        }
+    }
+
+    /*
+     * The body of one method. Every add takes the instruction's effect on the operand stack, in slots
+     * (a double counts two), so the deepest point is known when the method is written.
+     * */
+    static final class Code {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+        private int depth = 0;
+        private int maxDepth = 0;
+        final int maxLocals;
+
+        Code(int maxLocals) {
+            this.maxLocals = maxLocals;
+        }
+
+        int length() {
+            return length;
+        }
+
+        int maxStack() {
+            return maxDepth;
+        }
+
+        void op(int opcode, int stackEffect) {
+            ensure(1);
+            bytes[length++] = (byte) opcode;
+            move(stackEffect);
+        }
+
+        void op1(int opcode, int operand, int stackEffect) {
+            ensure(2);
+            bytes[length++] = (byte) opcode;
+            bytes[length++] = (byte) operand;
+            move(stackEffect);
+        }
+
+        void op2(int opcode, int operand, int stackEffect) {
+            ensure(3);
+            bytes[length++] = (byte) opcode;
+            bytes[length++] = (byte) (operand >> 8);
+            bytes[length++] = (byte) operand;
+            move(stackEffect);
+        }
+
+        // Appends another method body, as if its instructions had been added here.
+        void append(Code other) {
+            ensure(other.length);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            length += other.length;
+            maxDepth = Math.max(maxDepth, depth + other.maxDepth);
+            depth += other.depth;
+        }
+
+        private void move(int stackEffect) {
+            depth += stackEffect;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void ensure(int more) {
+            if (length + more > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+        }
+    }
+
+    // The opcodes JvmCompiler uses.
+    static final class Opcodes {
+        static final int ACONST_NULL = 0x01;
+        static final int ICONST_M1 = 0x02;
+        static final int ICONST_0 = 0x03;
+        static final int ICONST_1 = 0x04;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC = 0x12;
+        static final int LDC_W = 0x13;
+        static final int LDC2_W = 0x14;
+        static final int ALOAD_0 = 0x2A;
+        static final int POP = 0x57;
+        static final int POP2 = 0x58;
+        static final int DUP = 0x59;
+        static final int DUP2_X2 = 0x5E;
+        static final int DADD = 0x63;
+        static final int ISUB = 0x64;
+        static final int DSUB = 0x67;
+        static final int IMUL = 0x68;
+        static final int DMUL = 0x6B;
+        static final int DDIV = 0x6F;
+        static final int INEG = 0x74;
+        static final int DNEG = 0x77;
+        static final int IUSHR = 0x7C;
+        static final int IXOR = 0x82;
+        static final int LCMP = 0x94;
+        static final int DCMPL = 0x97;
+        static final int DCMPG = 0x98;
+        static final int RETURN = 0xB1;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESTATIC = 0xB8;
+
+        private Opcodes() {
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.lox.Values.*;
+
+/*
+ * Runs a program as a tree of lambdas (`--engine=closure`). Every Expr and Stmt is converted once into a closure
+ * that has its children and its operator already bound, so running it is a chain of calls with no visitor dispatch
+ * and no switch on the operator type.
+ *
+ * A subtree that can only produce a number, or fail, becomes a NumberClosure, which hands the number back as a
+ * double; the operators over two of those do their arithmetic without boxing or checking. The other closures
+ * check their operands' types when they run, with the same errors, on the same operators, as the Interpreter.
+ *
+ * The closures hold nothing of the run that executes them, they're handed its output, so a CompiledProgram builds
+ * them once with compile() and every execution runs the same ones.
+ * */
+class ClosureCompiler
+        implements Engine, Expr.Visitor<ClosureCompiler.Closure>, Stmt.Visitor<ClosureCompiler.Statement> {
+    private final Session session;
+    private final Program precompiled;
+
+    @FunctionalInterface
+    interface Statement {
+        void run(OutputSink out);
+    }
+
+    record Program(List<Stmt> statements, List<Statement> compiled) {
+    }
+
+    @FunctionalInterface
+    interface Closure {
+        Object evaluate();
+    }
+
+    @FunctionalInterface
+    interface NumberClosure extends Closure {
+        double number();
+
+        @Override
+        default Object evaluate() {
+            return number();
+        }
+    }
+
+    ClosureCompiler(Session session) {
+        this(session, null);
+    }
+
+    ClosureCompiler(Session session, Program precompiled) {
+        this.session = session;
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        var program = precompiled != null && precompiled.statements() == statements
+                ? precompiled : compile(statements);
+        run(program);
+    }
+
+    static Program compile(List<Stmt> statements) {
+        // Building closures doesn't need a session.
+        var compiler = new ClosureCompiler(null);
+        List<Statement> compiled = new ArrayList<>(statements.size());
+        for (Stmt stmt : statements) {
+            compiled.add(stmt.accept(compiler));
+        }
+        return new Program(statements, List.copyOf(compiled));
+    }
+
+    void run(Program program) {
+        OutputSink out = session.out;
+        try {
+            for (Statement stmt : program.compiled()) {
+                stmt.run(out);
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        }
+    }
+
+    @Override
+    public Statement visit(Stmt.Expression stmt) {
+        Closure expression = stmt.expression.accept(this);
+        return out -> expression.evaluate();
+    }
+
+    @Override
+    public Statement visit(Stmt.Print stmt) {
+        Closure expression = stmt.expression.accept(this);
+        if (expression instanceof NumberClosure number) return out -> out.println(number.number());
+        return out -> print(out, expression.evaluate());
+    }
+
+    @Override
+    public Closure visit(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double d) {
+            double number = d;
+            return (NumberClosure) () -> number;
+        }
+        return () -> value;
+    }
+
+    @Override
+    public Closure visit(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Closure visit(Expr.Unary expr) {
+        Closure right = expr.right.accept(this);
+        Token operator = expr.operator;
+        return switch (operator.type) {
+            case MINUS -> {
+                if (right instanceof NumberClosure r) yield (NumberClosure) () -> -r.number();
+                yield (NumberClosure) () -> {
+                    if (right.evaluate() instanceof Double d) return -d;
+                    throw new RuntimeError(operator, "Operand must be a number.");
+                };
+            }
+            case BANG -> () -> !isTruthy(right.evaluate());
+            default -> throw new IllegalStateException("Unexpected unary operator " + operator.type);
+        };
+    }
+
+    @Override
+    public Closure visit(Expr.Binary expr) {
+        Closure left = expr.left.accept(this);
+        Closure right = expr.right.accept(this);
+        Token operator = expr.operator;
+        if (left instanceof NumberClosure l && right instanceof NumberClosure r) {
+            return switch (operator.type) {
+                case MINUS -> (NumberClosure) () -> l.number() - r.number();
+                case SLASH -> (NumberClosure) () -> l.number() / r.number();
+                case STAR -> (NumberClosure) () -> l.number() * r.number();
+                case PLUS -> (NumberClosure) () -> l.number() + r.number();
+                case GREATER -> () -> l.number() > r.number();
+                case GREATER_EQUAL -> () -> l.number() >= r.number();
+                case LESS -> () -> l.number() < r.number();
+                case LESS_EQUAL -> () -> l.number() <= r.number();
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> () -> Double.doubleToLongBits(l.number()) != Double.doubleToLongBits(r.number());
+                case EQUAL_EQUAL -> () -> Double.doubleToLongBits(l.number()) == Double.doubleToLongBits(r.number());
+                default -> nil(left, right);
+            };
+        }
+        return switch (operator.type) {
+            case MINUS -> (NumberClosure) () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a - (double) b;
+            };
+            case SLASH -> (NumberClosure) () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a / (double) b;
+            };
+            case STAR -> (NumberClosure) () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a * (double) b;
+            };
+            case PLUS -> () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                if (a instanceof Double x && b instanceof Double y) return x + y;
+                if (a instanceof CharSequence x && b instanceof CharSequence y) return Rope.concat(x, y);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            };
+            case GREATER -> () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a > (double) b;
+            };
+            case GREATER_EQUAL -> () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a >= (double) b;
+            };
+            case LESS -> () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a < (double) b;
+            };
+            case LESS_EQUAL -> () -> {
+                Object a = left.evaluate();
+                Object b = right.evaluate();
+                checkNumberOperands(operator, a, b);
+                return (double) a <= (double) b;
+            };
+            case BANG_EQUAL -> () -> !isEqual(left.evaluate(), right.evaluate());
+            case EQUAL_EQUAL -> () -> isEqual(left.evaluate(), right.evaluate());
+            default -> nil(left, right);
+        };
+    }
+
+    private static Closure nil(Closure left, Closure right) {
+        return () -> {
+            left.evaluate();
+            right.evaluate();
+            return null;
+        };
+    }
+
+    // Called once both operands have been evaluated, as in Interpreter.binary.
+    private static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+}
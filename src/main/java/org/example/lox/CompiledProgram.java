@@ -0,0 +1,56 @@
+package org.example.lox;
+
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * A parsed program, ready to run. The statements are never modified after compilation, and every execution gets
+ * an engine of its own, so any number of threads can execute one CompiledProgram at the same time without locking.
+ * Engines that run something other than the tree get it prepared here, once, and shared by the executions the
+ * same way: bytecode on the jvm engine, closures on the closure engine, records on the sealed engine and a FlatAst
+ * on the flat and memo engines.
+ * */
+public final class CompiledProgram {
+    private final List<Stmt> statements;
+    // Counted here so that executions, which can be many, don't each walk the tree to count them.
+    private final long nodes;
+    private final Function<Session, Engine> engine;
+
+    CompiledProgram(List<Stmt> statements, String engine) {
+        this.statements = statements;
+        this.nodes = Optimizer.count(statements);
+        this.engine = switch (engine) {
+            case "jvm" -> {
+                var bytecode = JvmCompiler.compile(statements);
+                yield session -> new JvmEngine(session, bytecode);
+            }
+            case "closure" -> {
+                var closures = ClosureCompiler.compile(statements);
+                yield session -> new ClosureCompiler(session, closures);
+            }
+            case "sealed" -> {
+                var records = new SealedInterpreter.Program(statements, SealedInterpreter.convert(statements));
+                yield session -> new SealedInterpreter(session, records);
+            }
+            case "flat" -> {
+                var flat = new FlatInterpreter.Program(statements, FlatAst.of(statements));
+                yield session -> new FlatInterpreter(session, flat);
+            }
+            case "memo" -> {
+                var flat = new MemoInterpreter.Program(statements, FlatAst.sharing(statements));
+                yield session -> new MemoInterpreter(session, flat);
+            }
+            default -> session -> Session.engine(engine, session);
+        };
+    }
+
+    /*
+     * Runs the program, printing to context.out() and reporting a runtime error to context.errors().
+     * Returns false if it stopped on a runtime error.
+     * */
+    public boolean execute(ExecutionContext context) {
+        var session = new Session(context.out(), context.errors(), engine);
+        session.interpret(statements, nodes);
+        return !session.hadRuntimeError();
+    }
+}
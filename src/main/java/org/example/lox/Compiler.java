@@ -0,0 +1,112 @@
+package org.example.lox;
+
+import java.util.List;
+
+/*
+ * Compiles the Stmt/Expr trees into a Chunk for the VM.
+ * Operands are pushed left to right before their operator, so the VM evaluates in exactly the order
+ * the Interpreter does and fails on the same operator.
+ * */
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final Chunk chunk = new Chunk();
+    private int stackDepth = 0;
+    private int line = 1;
+
+    Chunk compile(List<Stmt> statements) {
+        for (Stmt stmt : statements) {
+            stmt.accept(this);
+        }
+        emit(OpCode.RETURN, 0);
+        return chunk;
+    }
+
+    @Override
+    public Void visit(Expr.Binary expr) {
+        expr.left.accept(this);
+        expr.right.accept(this);
+        line = expr.operator.line;
+        byte op = switch (expr.operator.type) {
+            case PLUS -> OpCode.ADD;
+            case MINUS -> OpCode.SUBTRACT;
+            case STAR -> OpCode.MULTIPLY;
+            case SLASH -> OpCode.DIVIDE;
+            case GREATER -> OpCode.GREATER;
+            case GREATER_EQUAL -> OpCode.GREATER_EQUAL;
+            case LESS -> OpCode.LESS;
+            case LESS_EQUAL -> OpCode.LESS_EQUAL;
+            case EQUAL_EQUAL -> OpCode.EQUAL;
+            case BANG_EQUAL -> OpCode.NOT_EQUAL;
+            default -> throw new IllegalStateException("Unexpected binary operator " + expr.operator.type);
+        };
+        emit(op, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.Grouping expr) {
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value == null) {
+            emit(OpCode.NIL, 1);
+        } else if (value instanceof Boolean b) {
+            emit(b ? OpCode.TRUE : OpCode.FALSE, 1);
+        } else {
+            int index = chunk.addConstant(value);
+            if (index <= 0xFFFF) {
+                emit(OpCode.CONSTANT, 1);
+                emitOperand(index >> 8);
+                emitOperand(index);
+            } else if (index <= 0xFFFFFF) {
+                emit(OpCode.CONSTANT_LONG, 1);
+                emitOperand(index >> 16);
+                emitOperand(index >> 8);
+                emitOperand(index);
+            } else {
+                throw new IllegalStateException("Too many constants in one chunk.");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.Unary expr) {
+        expr.right.accept(this);
+        line = expr.operator.line;
+        byte op = switch (expr.operator.type) {
+            case MINUS -> OpCode.NEGATE;
+            case BANG -> OpCode.NOT;
+            default -> throw new IllegalStateException("Unexpected unary operator " + expr.operator.type);
+        };
+        emit(op, 0);
+        return null;
+    }
+
+    @Override
+    public Void visit(Stmt.Expression stmt) {
+        stmt.expression.accept(this);
+        emit(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Stmt.Print stmt) {
+        stmt.expression.accept(this);
+        emit(OpCode.PRINT, -1);
+        return null;
+    }
+
+    private void emit(byte op, int stackEffect) {
+        chunk.write(op, line);
+        stackDepth += stackEffect;
+        chunk.maxStack = Math.max(chunk.maxStack, stackDepth);
+    }
+
+    private void emitOperand(int b) {
+        chunk.write((byte) b, line);
+    }
+}
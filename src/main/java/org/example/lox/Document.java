@@ -0,0 +1,289 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * An editable program, for editors and the REPL, which appends each line it reads. After an edit only the damaged
+ * part of the source is re-scanned and only the statements whose tokens changed are re-parsed; every other Stmt is
+ * kept as is.
+ *
+ * Re-scanning starts at the last token that begins before the edit and stops as soon as the Scanner is about to
+ * start a lexeme exactly where an old token after the edit started: the Scanner carries nothing but the line
+ * from one lexeme to the next, so from there on the old tokens are still right once they are moved by the edit.
+ * Re-parsing does the same one level up, stopping at the first old statement boundary it lands on again.
+ *
+ * The text (a GapBuffer), the tokens (a TokenBuffer) and the statements are all gap buffers whose gap is moved to
+ * the edit, and what comes after the edit is moved by changing one number, so an edit costs its own size and how
+ * far the gaps move, not the size of the document. A statement after an edit that added or removed lines is only
+ * rebuilt with its new line numbers when it's asked for.
+ * */
+final class Document {
+    private final SymbolTable symbols = new SymbolTable();
+    private final Session session;
+    // Kept for the document's lifetime, so re-parsed statements share nodes with the ones kept.
+    private final HashConser nodes;
+    private final GapBuffer text;
+    private final TokenBuffer tokens;
+    // Statement i starts at token first[i] and runs up to the next statement, or EOF. It is null if it did not parse.
+    // After the gap, first[] holds the number of tokens from the statement to the end, which no edit before it
+    // changes, and line[] is the line its first token was on when it was parsed.
+    private Stmt[] statements = new Stmt[16];
+    private int[] first = new int[16];
+    private int[] line = new int[16];
+    private int count = 0;
+    private int tail = 0;
+    private int failed = 0;
+
+    // Syntax errors are reported to `session` as they are found, including those found again after an edit.
+    Document(String text, Session session) {
+        this.session = session;
+        this.nodes = session.nodes();
+        this.text = new GapBuffer(text);
+        this.tokens = new Scanner(this.text, new TokenBuffer(this.text, symbols), session).scanTokens();
+        reparse(0, 0);
+    }
+
+    String text() {
+        return text.toString();
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    boolean hadError() {
+        return tokens.hadError() || failed > 0;
+    }
+
+    int size() {
+        return count + tail;
+    }
+
+    // Like Parser.parse(): nothing at all while any part of the document has a syntax error.
+    List<Stmt> statements() {
+        return statements(0);
+    }
+
+    // The statements from index `from` on, or nothing while any part of the document has a syntax error.
+    List<Stmt> statements(int from) {
+        if (hadError()) return Collections.emptyList();
+        List<Stmt> result = new ArrayList<>(size() - from);
+        for (int i = from; i < size(); i++) {
+            result.add(statement(i));
+        }
+        return result;
+    }
+
+    // Statement `index`, moved to the lines it is on now.
+    private Stmt statement(int index) {
+        int slot = slot(index);
+        int now = tokens.line(firstToken(index));
+        if (now != line[slot] && statements[slot] != null) {
+            statements[slot] = new LineShifter(now - line[slot]).shift(statements[slot]);
+            line[slot] = now;
+        }
+        return statements[slot];
+    }
+
+    // Replaces `removed` chars at `offset` with `inserted`.
+    void edit(int offset, int removed, String inserted) {
+        int delta = inserted.length() - removed;
+        int lineDelta = newlines(inserted, 0, inserted.length()) - newlines(text, offset, offset + removed);
+        int insertedEnd = offset + inserted.length();
+
+        // The last token before the edit may run on into it, so re-scanning starts there.
+        int restart = lastTokenBefore(offset);
+        int restartOffset = 0;
+        int restartLine = 1;
+        if (restart >= 0) {
+            restartOffset = tokens.start(restart);
+            restartLine = tokens.line(restart) - newlines(text, restartOffset, restartOffset + tokens.length(restart));
+        } else {
+            restart = 0;
+        }
+
+        // A statement that did not parse ends wherever error recovery stopped, which depends on the first token
+        // of the statement after it, so that one has to be re-parsed along with it.
+        int from = statementAt(restart);
+        if (from > 0 && statements[slot(from - 1)] == null) from--;
+        int reparseFrom = from < size() ? firstToken(from) : 0;
+        moveGap(from);
+
+        tokens.cut(restart);
+        tokens.shiftTail(delta, lineDelta);
+        text.replace(offset, removed, inserted);
+        boolean resynced = new Scanner(text, tokens, session).scanFrom(restartOffset, restartLine,
+                position -> position >= insertedEnd && tokens.resync(position));
+        // The Scanner added an EOF of its own.
+        if (!resynced) tokens.resync(Integer.MAX_VALUE);
+        reparse(reparseFrom, tokens.gap());
+    }
+
+    /*
+     * Parses on from token `position`, the start of the first statement after the gap, until the parser is at the
+     * start of a statement after the gap whose tokens were all kept, from token `kept` on. That statement and the
+     * ones after it are kept; the rest of the old ones after the gap are dropped.
+     * */
+    private void reparse(int position, int kept) {
+        Parser parser = session.parser(tokens, nodes);
+        parser.seek(position);
+        while (!parser.isAtEnd()) {
+            position = parser.position();
+            while (tail > 0 && (tailFirst() < kept || tailFirst() < position)) dropTail();
+            if (tail > 0 && tailFirst() == position) return;
+            add(parser.statementOrNull(), position);
+        }
+        while (tail > 0) dropTail();
+    }
+
+    private void add(Stmt statement, int position) {
+        if (count + tail == statements.length) grow();
+        statements[count] = statement;
+        first[count] = position;
+        line[count] = tokens.line(position);
+        if (statement == null) failed++;
+        count++;
+    }
+
+    private int tailFirst() {
+        return tokens.size() - first[statements.length - tail];
+    }
+
+    private void dropTail() {
+        int slot = statements.length - tail;
+        if (statements[slot] == null) failed--;
+        statements[slot] = null;
+        tail--;
+    }
+
+    // Moves the gap to before statement `index`.
+    private void moveGap(int index) {
+        int size = tokens.size();
+        while (count > index) {
+            count--;
+            tail++;
+            int to = statements.length - tail;
+            statements[to] = statements[count];
+            first[to] = size - first[count];
+            line[to] = line[count];
+            statements[count] = null;
+        }
+        while (count < index) {
+            int from = statements.length - tail;
+            statements[count] = statements[from];
+            first[count] = size - first[from];
+            line[count] = line[from];
+            statements[from] = null;
+            count++;
+            tail--;
+        }
+    }
+
+    private void grow() {
+        int capacity = statements.length * 2;
+        Stmt[] grown = new Stmt[capacity];
+        System.arraycopy(statements, 0, grown, 0, count);
+        System.arraycopy(statements, statements.length - tail, grown, capacity - tail, tail);
+        int[] grownFirst = new int[capacity];
+        System.arraycopy(first, 0, grownFirst, 0, count);
+        System.arraycopy(first, first.length - tail, grownFirst, capacity - tail, tail);
+        int[] grownLine = new int[capacity];
+        System.arraycopy(line, 0, grownLine, 0, count);
+        System.arraycopy(line, line.length - tail, grownLine, capacity - tail, tail);
+        statements = grown;
+        first = grownFirst;
+        line = grownLine;
+    }
+
+    private int slot(int index) {
+        return index < count ? index : index + statements.length - count - tail;
+    }
+
+    private int firstToken(int index) {
+        return index < count ? first[index] : tokens.size() - first[slot(index)];
+    }
+
+    // The index of the statement holding token `index`, or 0 if it comes before them all.
+    private int statementAt(int index) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (firstToken(middle) <= index) low = middle + 1;
+            else high = middle;
+        }
+        return Math.max(0, low - 1);
+    }
+
+    // The last token that starts before `offset`, or -1. EOF never does.
+    private int lastTokenBefore(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) < offset) low = middle + 1;
+            else high = middle;
+        }
+        return low - 1;
+    }
+
+    private static int newlines(CharSequence text, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    /*
+     * Copies a statement with every Token in it moved by a number of lines, so runtime errors keep pointing at
+     * the right line. Nodes without a Token are shared with the original.
+     * */
+    private static final class LineShifter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+        private final int lines;
+
+        LineShifter(int lines) {
+            this.lines = lines;
+        }
+
+        Stmt shift(Stmt stmt) {
+            return stmt.accept(this);
+        }
+
+        private Token shift(Token token) {
+            return new Token(token.type, token.lexeme, token.literal, token.line + lines);
+        }
+
+        @Override
+        public Expr visit(Expr.Binary expr) {
+            return new Expr.Binary(expr.left.accept(this), shift(expr.operator), expr.right.accept(this));
+        }
+
+        @Override
+        public Expr visit(Expr.Grouping expr) {
+            return new Expr.Grouping(expr.expression.accept(this));
+        }
+
+        @Override
+        public Expr visit(Expr.Literal expr) {
+            return expr;
+        }
+
+        @Override
+        public Expr visit(Expr.Unary expr) {
+            return new Expr.Unary(shift(expr.operator), expr.right.accept(this));
+        }
+
+        @Override
+        public Stmt visit(Stmt.Expression stmt) {
+            return new Stmt.Expression(stmt.expression.accept(this));
+        }
+
+        @Override
+        public Stmt visit(Stmt.Print stmt) {
+            return new Stmt.Print(stmt.expression.accept(this));
+        }
+    }
+}
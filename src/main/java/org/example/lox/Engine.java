@@ -0,0 +1,12 @@
+package org.example.lox;
+
+import java.util.List;
+
+/*
+ * Something that can run a parsed program.
+ * The tree-walking Interpreter is the reference implementation; every other engine must produce the same output
+ * and report runtime errors with the same message and line.
+ * */
+interface Engine {
+    void interpret(List<Stmt> statements);
+}
@@ -0,0 +1,32 @@
+package org.example.lox;
+
+import java.io.PrintStream;
+
+/*
+ * Receives the errors of one compilation or execution.
+ * */
+public interface ErrorCollector {
+    /*
+     * A syntax error. `where` is "" when the Scanner found it, " at end" at the end of the source and
+     * " at 'lexeme'" otherwise, which is how jlox prints them.
+     * */
+    void syntaxError(int line, String where, String message);
+
+    // A runtime error, which stops the program.
+    void runtimeError(int line, String message);
+
+    // Prints errors the way the jlox command line does.
+    static ErrorCollector printingTo(PrintStream err) {
+        return new ErrorCollector() {
+            @Override
+            public void syntaxError(int line, String where, String message) {
+                err.printf("[line %d] Error%s: %s%n", line, where, message);
+            }
+
+            @Override
+            public void runtimeError(int line, String message) {
+                err.printf("%s\n[line %d]%n", message, line);
+            }
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.lox;
+
+/*
+ * What one execution of a CompiledProgram writes to. Executions running at the same time need their own contexts,
+ * or at least sinks and collectors that can be written to from several threads.
+ * */
+public record ExecutionContext(OutputSink out, ErrorCollector errors) {
+}
@@ -10,12 +10,19 @@ import java.util.List;
 public abstract class Expr {
 
   abstract <R> R accept(Visitor<R> visitor);
+  abstract double acceptDouble(DoubleVisitor visitor);
   interface Visitor<R> {
     R visit(Binary expr);
     R visit(Grouping expr);
     R visit(Literal expr);
     R visit(Unary expr);
   }
+  interface DoubleVisitor {
+    double visitDouble(Binary expr);
+    double visitDouble(Grouping expr);
+    double visitDouble(Literal expr);
+    double visitDouble(Unary expr);
+  }
   static class Binary extends Expr {
     Binary(Expr left, Token operator, Expr right) {
       this.left = left;
@@ -32,6 +39,11 @@ public abstract class Expr {
 	     return visitor.visit(this);
 	}
 
+	@Override
+	double acceptDouble(DoubleVisitor visitor) {
+	     return visitor.visitDouble(this);
+	}
+
   }
   static class Grouping extends Expr {
     Grouping(Expr expression) {
@@ -45,6 +57,11 @@ public abstract class Expr {
 	     return visitor.visit(this);
 	}
 
+	@Override
+	double acceptDouble(DoubleVisitor visitor) {
+	     return visitor.visitDouble(this);
+	}
+
   }
   static class Literal extends Expr {
     Literal(Object value) {
@@ -58,6 +75,11 @@ public abstract class Expr {
 	     return visitor.visit(this);
 	}
 
+	@Override
+	double acceptDouble(DoubleVisitor visitor) {
+	     return visitor.visitDouble(this);
+	}
+
   }
   static class Unary extends Expr {
     Unary(Token operator, Expr right) {
@@ -73,5 +95,10 @@ public abstract class Expr {
 	     return visitor.visit(this);
 	}
 
+	@Override
+	double acceptDouble(DoubleVisitor visitor) {
+	     return visitor.visitDouble(this);
+	}
+
   }
 }
@@ -0,0 +1,190 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A program's tree laid out in a few primitive arrays instead of an object per node, for FlatInterpreter
+ * (`--engine=flat`). A node is NODE_SIZE ints in `nodes`:
+ *
+ *     KIND    BINARY, GROUPING, NUMBER, LITERAL or UNARY
+ *     VALUE   the operator's index in `tokens`, or the literal's in `numbers` or `constants`
+ *     FIRST   the left operand, or the only one
+ *     SECOND  the right operand
+ *
+ * Nodes are numbered in post order, operands before the node they belong to, and each statement's nodes come
+ * right after the previous statement's. Evaluating a statement is then one pass up its range of the arrays, and
+ * a whole program is released by dropping the arrays. `statements` holds each statement's root and whether it
+ * is a print.
+ *
+ * of() flattens the parser's tree and toStatements() rebuilds one equal to it. sharing() flattens a tree whose
+ * equal subtrees are one object (see HashConser) into one node per subtree and statement, which a stack can't
+ * evaluate, since the node is an operand more than once, but MemoInterpreter can; toStatements() shares them again.
+ * */
+final class FlatAst {
+    static final int BINARY = 0, GROUPING = 1, NUMBER = 2, LITERAL = 3, UNARY = 4;
+    static final int NODE_SIZE = 4;
+    static final int KIND = 0, VALUE = 1, FIRST = 2, SECOND = 3;
+    static final int STATEMENT_SIZE = 2;
+    static final int ROOT = 0, PRINT = 1;
+
+    final int[] nodes;
+    final Token[] tokens;
+    final double[] numbers;
+    final Object[] constants;
+    final int[] statements;
+
+    private FlatAst(int[] nodes, Token[] tokens, double[] numbers, Object[] constants, int[] statements) {
+        this.nodes = nodes;
+        this.tokens = tokens;
+        this.numbers = numbers;
+        this.constants = constants;
+        this.statements = statements;
+    }
+
+    static FlatAst of(List<Stmt> statements) {
+        return flatten(statements, new Builder(null));
+    }
+
+    static FlatAst sharing(List<Stmt> statements) {
+        return flatten(statements, new Builder(new IdentityHashMap<>()));
+    }
+
+    private static FlatAst flatten(List<Stmt> statements, Builder builder) {
+        int[] roots = new int[statements.size() * STATEMENT_SIZE];
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            boolean print = stmt instanceof Stmt.Print;
+            builder.startStatement();
+            roots[i * STATEMENT_SIZE + ROOT] =
+                    builder.add(print ? ((Stmt.Print) stmt).expression : ((Stmt.Expression) stmt).expression);
+            roots[i * STATEMENT_SIZE + PRINT] = print ? 1 : 0;
+        }
+        return builder.build(roots);
+    }
+
+    int statementCount() {
+        return statements.length / STATEMENT_SIZE;
+    }
+
+    List<Stmt> toStatements() {
+        List<Stmt> result = new ArrayList<>(statementCount());
+        int first = 0;
+        for (int i = 0; i < statements.length; i += STATEMENT_SIZE) {
+            int root = statements[i + ROOT];
+            Expr expression = toExpr(first, root);
+            result.add(statements[i + PRINT] == 1 ? new Stmt.Print(expression) : new Stmt.Expression(expression));
+            first = root + 1;
+        }
+        return result;
+    }
+
+    // The tree under `node`.
+    Expr toExpr(int node) {
+        int first = 0;
+        for (int i = 0; i < statements.length && statements[i + ROOT] < node; i += STATEMENT_SIZE) {
+            first = statements[i + ROOT] + 1;
+        }
+        return toExpr(first, node);
+    }
+
+    /*
+     * Builds nodes `first` to `root`, a statement's, or the start of one, in order. Every operand comes before
+     * the node it belongs to, so it is built by then, and it's one pass with no recursion however deep the tree.
+     * */
+    private Expr toExpr(int first, int root) {
+        Expr[] built = new Expr[root - first + 1];
+        for (int node = first; node <= root; node++) {
+            int at = node * NODE_SIZE;
+            built[node - first] = switch (nodes[at + KIND]) {
+                case BINARY -> new Expr.Binary(built[nodes[at + FIRST] - first], tokens[nodes[at + VALUE]],
+                        built[nodes[at + SECOND] - first]);
+                case GROUPING -> new Expr.Grouping(built[nodes[at + FIRST] - first]);
+                case NUMBER -> new Expr.Literal(numbers[nodes[at + VALUE]]);
+                case LITERAL -> new Expr.Literal(constants[nodes[at + VALUE]]);
+                default -> new Expr.Unary(tokens[nodes[at + VALUE]], built[nodes[at + FIRST] - first]);
+            };
+        }
+        return built[root - first];
+    }
+
+    /*
+     * Appends nodes to arrays that grow as needed; build() trims them to size. With `added`, an object already
+     * added in the current statement isn't added again.
+     * */
+    private static final class Builder {
+        private final Map<Expr, Integer> added;
+        private int[] nodes = new int[64 * NODE_SIZE];
+        private int nodeCount = 0;
+        private Token[] tokens = new Token[32];
+        private int tokenCount = 0;
+        private double[] numbers = new double[32];
+        private int numberCount = 0;
+        private Object[] constants = new Object[8];
+        private int constantCount = 0;
+
+        Builder(Map<Expr, Integer> added) {
+            this.added = added;
+        }
+
+        void startStatement() {
+            if (added != null) added.clear();
+        }
+
+        // Adds `expr` after its operands and returns its number.
+        int add(Expr expr) {
+            if (added == null) return addNode(expr);
+            Integer node = added.get(expr);
+            if (node == null) {
+                node = addNode(expr);
+                added.put(expr, node);
+            }
+            return node;
+        }
+
+        private int addNode(Expr expr) {
+            if (expr instanceof Expr.Binary binary) {
+                int left = add(binary.left);
+                int right = add(binary.right);
+                return node(BINARY, token(binary.operator), left, right);
+            } else if (expr instanceof Expr.Grouping grouping) {
+                return node(GROUPING, 0, add(grouping.expression), 0);
+            } else if (expr instanceof Expr.Unary unary) {
+                return node(UNARY, token(unary.operator), add(unary.right), 0);
+            }
+            Object value = ((Expr.Literal) expr).value;
+            if (value instanceof Double d) {
+                if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+                numbers[numberCount] = d;
+                return node(NUMBER, numberCount++, 0, 0);
+            }
+            if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+            constants[constantCount] = value;
+            return node(LITERAL, constantCount++, 0, 0);
+        }
+
+        private int token(Token token) {
+            if (tokenCount == tokens.length) tokens = Arrays.copyOf(tokens, tokenCount * 2);
+            tokens[tokenCount] = token;
+            return tokenCount++;
+        }
+
+        private int node(int kind, int value, int first, int second) {
+            int at = nodeCount * NODE_SIZE;
+            if (at == nodes.length) nodes = Arrays.copyOf(nodes, at * 2);
+            nodes[at + KIND] = kind;
+            nodes[at + VALUE] = value;
+            nodes[at + FIRST] = first;
+            nodes[at + SECOND] = second;
+            return nodeCount++;
+        }
+
+        FlatAst build(int[] statements) {
+            return new FlatAst(Arrays.copyOf(nodes, nodeCount * NODE_SIZE), Arrays.copyOf(tokens, tokenCount),
+                    Arrays.copyOf(numbers, numberCount), Arrays.copyOf(constants, constantCount), statements);
+        }
+    }
+}
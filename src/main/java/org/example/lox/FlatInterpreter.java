@@ -0,0 +1,158 @@
+package org.example.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.example.lox.FlatAst.*;
+import static org.example.lox.Values.*;
+
+/*
+ * The tree Interpreter over a FlatAst (`--engine=flat`). Since a statement's nodes are in post order, running it
+ * is a single loop from its first node to its root: a literal pushes its value, an operator pops its operands and
+ * pushes the result, and a grouping leaves what its expression pushed. Operands come off the stack in the order
+ * the Interpreter evaluates them, so errors come out the same, on the same line.
+ *
+ * Values are kept as in the IterativeInterpreter, a double in `numbers` unless the slot in `others` holds
+ * something other than UNBOXED. Nothing here recurses, though converting the parser's tree still does; a
+ * CompiledProgram converts it once for all its executions.
+ * */
+final class FlatInterpreter implements Engine {
+    private static final Object UNBOXED = new Object();
+    private final Session session;
+    private final Program precompiled;
+    private double[] numbers = new double[64];
+    private Object[] others = new Object[64];
+    private int size = 0;
+
+    record Program(List<Stmt> statements, FlatAst ast) {
+    }
+
+    FlatInterpreter(Session session) {
+        this(session, null);
+    }
+
+    FlatInterpreter(Session session, Program precompiled) {
+        this.session = session;
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        run(precompiled != null && precompiled.statements() == statements
+                ? precompiled.ast() : FlatAst.of(statements));
+    }
+
+    void run(FlatAst ast) {
+        int first = 0;
+        try {
+            for (int i = 0; i < ast.statements.length; i += STATEMENT_SIZE) {
+                int root = ast.statements[i + ROOT];
+                execute(ast, first, root, ast.statements[i + PRINT] == 1);
+                first = root + 1;
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        } finally {
+            // Don't hold on to the program's strings.
+            Arrays.fill(others, null);
+        }
+    }
+
+    private void execute(FlatAst ast, int first, int root, boolean print) {
+        int[] nodes = ast.nodes;
+        size = 0;
+        for (int at = first * NODE_SIZE, end = root * NODE_SIZE; at <= end; at += NODE_SIZE) {
+            switch (nodes[at + KIND]) {
+                case NUMBER -> push(ast.numbers[nodes[at + VALUE]]);
+                case LITERAL -> push(ast.constants[nodes[at + VALUE]]);
+                case BINARY -> binary(ast.tokens[nodes[at + VALUE]]);
+                case UNARY -> unary(ast.tokens[nodes[at + VALUE]]);
+                // A grouping's value is already on the stack, its expression put it there.
+                default -> {
+                }
+            }
+        }
+        size--;
+        if (!print) return;
+        Object other = others[size];
+        if (other == UNBOXED) {
+            session.out.println(numbers[size]);
+        } else {
+            print(session.out, other);
+        }
+    }
+
+    private void push(double number) {
+        ensureCapacity();
+        numbers[size] = number;
+        others[size] = UNBOXED;
+        size++;
+    }
+
+    // For anything but a number, which goes through push(double).
+    private void push(Object value) {
+        ensureCapacity();
+        others[size] = value;
+        size++;
+    }
+
+    private void ensureCapacity() {
+        if (size == numbers.length) {
+            numbers = Arrays.copyOf(numbers, size * 2);
+            others = Arrays.copyOf(others, size * 2);
+        }
+    }
+
+    private void binary(Token operator) {
+        size -= 2;
+        double left = numbers[size];
+        Object leftOther = others[size];
+        double right = numbers[size + 1];
+        Object rightOther = others[size + 1];
+        if (leftOther == UNBOXED && rightOther == UNBOXED) {
+            switch (operator.type) {
+                case MINUS -> push(left - right);
+                case SLASH -> push(left / right);
+                case STAR -> push(left * right);
+                case PLUS -> push(left + right);
+                case GREATER -> push((Object) (left > right));
+                case GREATER_EQUAL -> push((Object) (left >= right));
+                case LESS -> push((Object) (left < right));
+                case LESS_EQUAL -> push((Object) (left <= right));
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> push((Object) (Double.doubleToLongBits(left) != Double.doubleToLongBits(right)));
+                case EQUAL_EQUAL -> push((Object) (Double.doubleToLongBits(left) == Double.doubleToLongBits(right)));
+                default -> push((Object) null);
+            }
+            return;
+        }
+        Object a = leftOther == UNBOXED ? (Object) left : leftOther;
+        Object b = rightOther == UNBOXED ? (Object) right : rightOther;
+        push(switch (operator.type) {
+            case PLUS -> {
+                if (a instanceof CharSequence l && b instanceof CharSequence r) yield Rope.concat(l, r);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+            case MINUS, SLASH, STAR, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                    throw new RuntimeError(operator, "Operands must be numbers.");
+            case BANG_EQUAL -> !isEqual(a, b);
+            case EQUAL_EQUAL -> isEqual(a, b);
+            default -> null;
+        });
+    }
+
+    private void unary(Token operator) {
+        size--;
+        double right = numbers[size];
+        Object other = others[size];
+        switch (operator.type) {
+            case MINUS -> {
+                if (other != UNBOXED) throw new RuntimeError(operator, "Operand must be a number.");
+                push(-right);
+            }
+            // Numbers are always truthy.
+            case BANG -> push((Object) (other != UNBOXED && !isTruthy(other)));
+            default -> push((Object) null);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.lox;
+
+/*
+ * A Document's text, edited in place: the chars before the gap sit at the start of the array, the ones after it at
+ * the end, and the gap is moved to wherever the next edit is. An edit costs its own size plus how far the gap
+ * moves, so a run of edits close together, like typing or the REPL adding lines at the end, costs nothing in
+ * the length of the text.
+ * */
+final class GapBuffer implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    GapBuffer(String text) {
+        chars = new char[Math.max(16, text.length() * 2)];
+        text.getChars(0, text.length(), chars, 0);
+        gapStart = text.length();
+        gapEnd = chars.length;
+    }
+
+    // Replaces `removed` chars at `offset` with `inserted`.
+    void replace(int offset, int removed, String inserted) {
+        moveGap(offset);
+        gapEnd += removed;
+        if (inserted.length() > gapEnd - gapStart) grow(inserted.length());
+        inserted.getChars(0, inserted.length(), chars, gapStart);
+        gapStart += inserted.length();
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int moved = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - moved, moved);
+            gapStart = offset;
+            gapEnd -= moved;
+        } else if (offset > gapStart) {
+            int moved = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, moved);
+            gapStart += moved;
+            gapEnd += moved;
+        }
+    }
+
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        char[] grown = new char[Math.max(chars.length * 2, length() + needed + 16)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+        gapEnd = grown.length - after;
+        chars = grown;
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (end <= gapStart) return new String(chars, start, end - start);
+        if (start >= gapStart) return new String(chars, start + gapEnd - gapStart, end - start);
+        return new StringBuilder(end - start)
+                .append(chars, start, gapStart - start)
+                .append(chars, gapEnd, end - gapStart)
+                .toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.lox;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * Makes the Parser's nodes so that structurally equal subtrees are one object (`--hash-cons`): a node is looked up
+ * by its kind, operator or literal and the identity of its operands, which are shared already, and only created
+ * when it's new. A program that repeats the same subexpression holds it once, and MemoInterpreter evaluates it
+ * once per statement.
+ *
+ * Every expression is pure, but a runtime error names its operator's line, so equal nodes on different lines
+ * are only shared when evaluating them can't fail at that node. That is known while parsing: with nothing but
+ * literals, the type of every subtree is. A node whose operand fails is shared freely, the error comes from the
+ * operand. Shared nodes keep the first occurrence's token, which the json dump shows.
+ * */
+final class HashConser {
+    // What a subtree evaluates to, or FAILS if evaluating it throws.
+    private enum Type {NUMBER, STRING, BOOLEAN, NIL, FAILS}
+
+    // A node by what makes it equal to another: its kind, operator or literal value, operands and, if it fails
+    // right there, its line. Written out rather than a record, whose equals and hashCode are slow to link cold.
+    private static final class Key {
+        final Class<?> kind;
+        final Object value;
+        final Expr left;
+        final Expr right;
+        final int line;
+
+        Key(Class<?> kind, Object value, Expr left, Expr right, int line) {
+            this.kind = kind;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && kind == other.kind && Objects.equals(value, other.value)
+                    && left == other.left && right == other.right && line == other.line;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind.hashCode();
+            hash = 31 * hash + Objects.hashCode(value);
+            hash = 31 * hash + System.identityHashCode(left);
+            hash = 31 * hash + System.identityHashCode(right);
+            return 31 * hash + line;
+        }
+    }
+
+    private static final int ANY_LINE = -1;
+    private final Map<Key, Expr> nodes = new HashMap<>();
+    private final Map<Expr, Type> types = new IdentityHashMap<>();
+    private int requested = 0;
+
+    Expr binary(Expr left, Token operator, Expr right) {
+        Type leftType = types.get(left);
+        Type rightType = types.get(right);
+        if (leftType == Type.FAILS || rightType == Type.FAILS) {
+            Key key = new Key(Expr.Binary.class, operator.type, left, right, ANY_LINE);
+            Expr shared = find(key);
+            return shared != null ? shared : add(key, Type.FAILS, new Expr.Binary(left, operator, right));
+        }
+        Type type = switch (operator.type) {
+            case MINUS, SLASH, STAR -> leftType == Type.NUMBER && rightType == Type.NUMBER ? Type.NUMBER : null;
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                    leftType == Type.NUMBER && rightType == Type.NUMBER ? Type.BOOLEAN : null;
+            case PLUS ->
+                    leftType == rightType && (leftType == Type.NUMBER || leftType == Type.STRING) ? leftType : null;
+            case BANG_EQUAL, EQUAL_EQUAL -> Type.BOOLEAN;
+            default -> Type.NIL;
+        };
+        int line = ANY_LINE;
+        // A null type fails right here, on this line.
+        if (type == null) {
+            type = Type.FAILS;
+            line = operator.line;
+        }
+        Key key = new Key(Expr.Binary.class, operator.type, left, right, line);
+        Expr shared = find(key);
+        return shared != null ? shared : add(key, type, new Expr.Binary(left, operator, right));
+    }
+
+    Expr unary(Token operator, Expr right) {
+        Type rightType = types.get(right);
+        Type type = switch (operator.type) {
+            case MINUS -> rightType == Type.NUMBER || rightType == Type.FAILS ? rightType : null;
+            case BANG -> rightType == Type.FAILS ? Type.FAILS : Type.BOOLEAN;
+            default -> rightType == Type.FAILS ? Type.FAILS : Type.NIL;
+        };
+        int line = ANY_LINE;
+        if (type == null) {
+            type = Type.FAILS;
+            line = operator.line;
+        }
+        Key key = new Key(Expr.Unary.class, operator.type, null, right, line);
+        Expr shared = find(key);
+        return shared != null ? shared : add(key, type, new Expr.Unary(operator, right));
+    }
+
+    Expr grouping(Expr expression) {
+        Key key = new Key(Expr.Grouping.class, null, null, expression, ANY_LINE);
+        Expr shared = find(key);
+        return shared != null ? shared : add(key, types.get(expression), new Expr.Grouping(expression));
+    }
+
+    Expr literal(Object value) {
+        Type type;
+        if (value instanceof Double) {
+            type = Type.NUMBER;
+        } else if (value instanceof String) {
+            type = Type.STRING;
+        } else if (value instanceof Boolean) {
+            type = Type.BOOLEAN;
+        } else {
+            type = Type.NIL;
+        }
+        // Double.equals tells -0 from 0, which print differently.
+        Key key = new Key(Expr.Literal.class, value, null, null, ANY_LINE);
+        Expr shared = find(key);
+        return shared != null ? shared : add(key, type, new Expr.Literal(value));
+    }
+
+    // The node the Parser asks for, if there is one already.
+    private Expr find(Key key) {
+        requested++;
+        return nodes.get(key);
+    }
+
+    private Expr add(Key key, Type type, Expr node) {
+        nodes.put(key, node);
+        types.put(node, type);
+        return node;
+    }
+
+    // How many nodes the Parser asked for, and how many of those it got a shared one for.
+    int nodesRequested() {
+        return requested;
+    }
+
+    int nodesShared() {
+        return requested - nodes.size();
+    }
+}
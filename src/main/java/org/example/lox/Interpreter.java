@@ -2,78 +2,123 @@ package org.example.lox;
 
 import java.util.List;
 
+import static org.example.lox.Values.*;
+
 /*
  * In Lox, values are created by literals, computed by expressions, and stored in variables.
  * The user sees these as Lox objects, but they are implemented in the underlying language our interpreter is written in.
  * That means bridging the lands of Lox’s dynamic typing and Java’s static types.
+ *
+ * Expressions are evaluated through the generated DoubleVisitor, so numbers travel up the tree as primitive doubles
+ * and arithmetic never allocates. Every other value is returned through a one-slot register instead:
+ * the visitor parks it in `boxed` and returns a meaningless double, and the caller picks it up with takeBoxed().
+ * While no value is parked the register holds UNBOXED.
  * */
-class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+class Interpreter implements Engine, Expr.DoubleVisitor, Stmt.Visitor<Void> {
+    private static final Object UNBOXED = new Object();
+    private final Session session;
+    private Object boxed = UNBOXED;
+
+    Interpreter(Session session) {
+        this.session = session;
+    }
 
-    void interpret(List<Stmt> stmts) {
+    @Override
+    public void interpret(List<Stmt> stmts) {
+        boxed = UNBOXED;
         try {
             for (Stmt stmt : stmts) {
                 execute(stmt);
             }
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            session.runtimeError(error);
         }
     }
-    private void execute(Stmt stmt) {
+    // Every statement and subexpression is run through these two, which ProfilingInterpreter wraps.
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
 
-    private String stringify(Object object) {
-        if (object == null) return "null";
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
-        return object.toString();
+    double evaluateDouble(Expr expr) {
+        return expr.acceptDouble(this);
+    }
+
+    private double spill(Object value) {
+        if (value instanceof Double d) return d;
+        boxed = value;
+        return Double.NaN;
+    }
+
+    private Object takeBoxed() {
+        Object value = boxed;
+        boxed = UNBOXED;
+        return value;
     }
 
     @Override
-    public Object visit(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
-        return switch (expr.operator.type) {
+    public double visitDouble(Expr.Binary expr) {
+        double left = evaluateDouble(expr.left);
+        Object leftOther = takeBoxed();
+        double right = evaluateDouble(expr.right);
+        Object rightOther = takeBoxed();
+        if (leftOther == UNBOXED && rightOther == UNBOXED) {
+            return switch (expr.operator.type) {
+                case MINUS -> left - right;
+                case SLASH -> left / right;
+                case STAR -> left * right;
+                case PLUS -> left + right;
+                case GREATER -> spill(left > right);
+                case GREATER_EQUAL -> spill(left >= right);
+                case LESS -> spill(left < right);
+                case LESS_EQUAL -> spill(left <= right);
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> spill(Double.doubleToLongBits(left) != Double.doubleToLongBits(right));
+                case EQUAL_EQUAL -> spill(Double.doubleToLongBits(left) == Double.doubleToLongBits(right));
+                default -> spill(null);
+            };
+        }
+        return spill(binary(expr.operator,
+                leftOther == UNBOXED ? (Object) left : leftOther,
+                rightOther == UNBOXED ? (Object) right : rightOther));
+    }
+
+    private Object binary(Token operator, Object left, Object right) {
+        return switch (operator.type) {
             case MINUS -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left - (double) right;
             }
             case SLASH -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left / (double) right;
             }
             case STAR -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left * (double) right;
             }
             case PLUS -> {
                 if (left instanceof Double l && right instanceof Double r) {
                     yield l + r;
                 }
-                if (left instanceof String l && right instanceof String r) {
-                    yield l + r;
+                if (left instanceof CharSequence l && right instanceof CharSequence r) {
+                    yield Rope.concat(l, r);
                 }
-                throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
             }
             case GREATER -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left > (double) right;
             }
             case GREATER_EQUAL -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left >= (double) right;
             }
             case LESS -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left < (double) right;
             }
             case LESS_EQUAL -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 yield (double) left <= (double) right;
             }
             case BANG_EQUAL -> !isEqual(left, right);
@@ -87,57 +132,45 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
     @Override
-    public Object visit(Expr.Grouping expr) {
-        return evaluate(expr.expression);
-    }
-
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
+    public double visitDouble(Expr.Grouping expr) {
+        return evaluateDouble(expr.expression);
     }
 
     @Override
-    public Object visit(Expr.Literal expr) {
-        return expr.value;
+    public double visitDouble(Expr.Literal expr) {
+        return spill(expr.value);
     }
     @Override
-    public Object visit(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
+    public double visitDouble(Expr.Unary expr) {
+        double right = evaluateDouble(expr.right);
+        Object other = takeBoxed();
         return switch (expr.operator.type) {
             case MINUS -> {
-                checkNumberOperand(expr.operator, right);
-                yield -(double) right;
+                if (other != UNBOXED) throw new RuntimeError(expr.operator, "Operand must be a number.");
+                yield -right;
             }
-            case BANG -> !isTruthy(right);
-            default -> null;
+            // Numbers are always truthy.
+            case BANG -> spill(other != UNBOXED && !isTruthy(other));
+            default -> spill(null);
         };
     }
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
-        throw new RuntimeError(operator, "Operand must be a number.");
-    }
-
-    private boolean isTruthy(Object object) {
-        if (object == null) return false;
-        if (object instanceof Boolean) return (boolean) object;
-        return true;
-    }
-
-    private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
-        return a.equals(b);
-    }
 
     @Override
     public Void visit(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
+        evaluateDouble(stmt.expression);
+        takeBoxed();
         return null;
     }
 
     @Override
     public Void visit(Stmt.Print stmt) {
-        Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        double value = evaluateDouble(stmt.expression);
+        Object other = takeBoxed();
+        if (other == UNBOXED) {
+            session.out.println(value);
+        } else {
+            print(session.out, other);
+        }
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package org.example.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.example.lox.Values.*;
+
+/*
+ * The tree Interpreter without recursion (`--engine=iterative`), for machine-generated programs nested deeper than
+ * the Java stack allows. Session parses for this engine with the Parser's stack-safe path as well.
+ *
+ * Evaluation walks the tree with two stacks on the heap: the nodes still being worked on, each with how many of
+ * its operands are done, and the values of finished operands. As in the Interpreter, numbers stay unboxed: a value
+ * is a double in `numbers`, unless its slot in `others` holds something other than UNBOXED. Operands are evaluated
+ * left to right and checked once both are done, so errors come out the same, on the same line.
+ *
+ * The stacks grow as needed and are kept for the next statement; the Java stack used is the same at any depth.
+ * */
+final class IterativeInterpreter implements Engine {
+    private static final Object UNBOXED = new Object();
+    private final Session session;
+    private Expr[] work = new Expr[64];
+    private int[] operandsDone = new int[64];
+    private int workSize = 0;
+    private double[] numbers = new double[64];
+    private Object[] others = new Object[64];
+    private int valueSize = 0;
+
+    IterativeInterpreter(Session session) {
+        this.session = session;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        try {
+            for (Stmt stmt : statements) {
+                execute(stmt);
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        } finally {
+            // Don't hold on to the program.
+            Arrays.fill(work, null);
+            Arrays.fill(others, null);
+        }
+    }
+
+    private void execute(Stmt stmt) {
+        workSize = 0;
+        valueSize = 0;
+        if (stmt instanceof Stmt.Print print) {
+            evaluate(print.expression);
+            valueSize--;
+            Object other = others[valueSize];
+            if (other == UNBOXED) {
+                session.out.println(numbers[valueSize]);
+            } else {
+                print(session.out, other);
+            }
+        } else {
+            evaluate(((Stmt.Expression) stmt).expression);
+            valueSize--;
+        }
+    }
+
+    // Leaves the value of `root` on top of the value stack.
+    private void evaluate(Expr root) {
+        pushWork(root);
+        while (workSize > 0) {
+            int top = workSize - 1;
+            Expr expr = work[top];
+            if (expr instanceof Expr.Binary binary) {
+                switch (operandsDone[top]++) {
+                    case 0 -> pushWork(binary.left);
+                    case 1 -> pushWork(binary.right);
+                    default -> {
+                        workSize--;
+                        binary(binary.operator);
+                    }
+                }
+            } else if (expr instanceof Expr.Literal literal) {
+                workSize--;
+                push(literal.value);
+            } else if (expr instanceof Expr.Unary unary) {
+                if (operandsDone[top]++ == 0) {
+                    pushWork(unary.right);
+                } else {
+                    workSize--;
+                    unary(unary.operator);
+                }
+            } else {
+                // A grouping is replaced by what it groups.
+                work[top] = ((Expr.Grouping) expr).expression;
+            }
+        }
+    }
+
+    private void pushWork(Expr expr) {
+        if (workSize == work.length) {
+            work = Arrays.copyOf(work, workSize * 2);
+            operandsDone = Arrays.copyOf(operandsDone, workSize * 2);
+        }
+        work[workSize] = expr;
+        operandsDone[workSize] = 0;
+        workSize++;
+    }
+
+    private void push(double number) {
+        ensureValueCapacity();
+        numbers[valueSize] = number;
+        others[valueSize] = UNBOXED;
+        valueSize++;
+    }
+
+    private void push(Object value) {
+        if (value instanceof Double d) {
+            push((double) d);
+            return;
+        }
+        ensureValueCapacity();
+        others[valueSize] = value;
+        valueSize++;
+    }
+
+    private void ensureValueCapacity() {
+        if (valueSize == numbers.length) {
+            numbers = Arrays.copyOf(numbers, valueSize * 2);
+            others = Arrays.copyOf(others, valueSize * 2);
+        }
+    }
+
+    private void binary(Token operator) {
+        valueSize -= 2;
+        double left = numbers[valueSize];
+        Object leftOther = others[valueSize];
+        double right = numbers[valueSize + 1];
+        Object rightOther = others[valueSize + 1];
+        if (leftOther == UNBOXED && rightOther == UNBOXED) {
+            switch (operator.type) {
+                case MINUS -> push(left - right);
+                case SLASH -> push(left / right);
+                case STAR -> push(left * right);
+                case PLUS -> push(left + right);
+                case GREATER -> push((Object) (left > right));
+                case GREATER_EQUAL -> push((Object) (left >= right));
+                case LESS -> push((Object) (left < right));
+                case LESS_EQUAL -> push((Object) (left <= right));
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> push((Object) (Double.doubleToLongBits(left) != Double.doubleToLongBits(right)));
+                case EQUAL_EQUAL -> push((Object) (Double.doubleToLongBits(left) == Double.doubleToLongBits(right)));
+                default -> push((Object) null);
+            }
+            return;
+        }
+        Object a = leftOther == UNBOXED ? (Object) left : leftOther;
+        Object b = rightOther == UNBOXED ? (Object) right : rightOther;
+        push(switch (operator.type) {
+            case PLUS -> {
+                if (a instanceof CharSequence l && b instanceof CharSequence r) yield Rope.concat(l, r);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+            case MINUS, SLASH, STAR, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                    throw new RuntimeError(operator, "Operands must be numbers.");
+            case BANG_EQUAL -> !isEqual(a, b);
+            case EQUAL_EQUAL -> isEqual(a, b);
+            default -> null;
+        });
+    }
+
+    private void unary(Token operator) {
+        valueSize--;
+        double right = numbers[valueSize];
+        Object other = others[valueSize];
+        switch (operator.type) {
+            case MINUS -> {
+                if (other != UNBOXED) throw new RuntimeError(operator, "Operand must be a number.");
+                push(-right);
+            }
+            // Numbers are always truthy.
+            case BANG -> push((Object) (other != UNBOXED && !isTruthy(other)));
+            default -> push((Object) null);
+        }
+    }
+}
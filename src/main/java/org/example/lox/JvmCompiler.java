@@ -0,0 +1,376 @@
+package org.example.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.lox.ClassWriter.Opcodes.*;
+
+/*
+ * Compiles a program to JVM bytecode for `--engine=jvm`: static methods `void sN(OutputSink)` on hidden classes,
+ * each running a run of consecutive statements, which HotSpot then compiles like any other Java code.
+ *
+ * Values live on the operand stack unboxed: numbers as doubles, booleans as ints, strings as Strings. Lox has no
+ * variables, so the type every expression produces is known here, and so is every type error; numeric operands
+ * that are both numbers become plain dadd/dcmpg/..., and operands of any other mix are popped and replaced by a
+ * JvmRuntime call that throws the same RuntimeError, on the same line, as the Interpreter would at that point.
+ * Comparisons are turned into 0 or 1 with shifts instead of jumps, so the code never branches.
+ *
+ * Methods are kept under HotSpot's 8000-byte limit for JIT compilation. A statement that can't be put in a class
+ * file at all (a string literal over 64KB, an expression nested too deep for the operand stack) is left to the
+ * tree Interpreter.
+ * */
+final class JvmCompiler implements Expr.Visitor<JvmCompiler.Type>, Stmt.Visitor<Void> {
+    // The hidden classes get a unique suffix appended to this name.
+    private static final String CLASS_NAME = "org/example/lox/LoxScript";
+    private static final String RUNTIME = "org/example/lox/JvmRuntime";
+    private static final MethodType STEP = MethodType.methodType(void.class, OutputSink.class);
+    private static final String STEP_DESCRIPTOR = "(Lorg/example/lox/OutputSink;)V";
+    // HotSpot doesn't JIT-compile methods with more bytecode than this.
+    private static final int METHOD_BUDGET = 8000;
+    private static final int METHODS_PER_CLASS = 256;
+
+    enum Type {
+        NUMBER(2), BOOLEAN(1), STRING(1), NIL(1);
+
+        // Operand stack slots a value of this type takes.
+        final int slots;
+
+        Type(int slots) {
+            this.slots = slots;
+        }
+    }
+
+    // Exactly one of the two is set.
+    record Step(MethodHandle compiled, Stmt interpreted) {
+    }
+
+    record Program(List<Stmt> statements, List<Step> steps) {
+    }
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final List<Step> steps = new ArrayList<>();
+    // Methods of the class being written, with the index in steps each one fills once the class is defined.
+    private final List<String> pendingNames = new ArrayList<>();
+    private final List<Integer> pendingSteps = new ArrayList<>();
+    private ClassWriter classWriter;
+    private boolean freshClass;
+    private ClassWriter.Code method;
+    private ClassWriter.Code code;
+
+    private JvmCompiler() {
+    }
+
+    static Program compile(List<Stmt> statements) {
+        var compiler = new JvmCompiler();
+        for (Stmt stmt : statements) {
+            compiler.add(stmt);
+        }
+        compiler.finishClass();
+        return new Program(statements, List.copyOf(compiler.steps));
+    }
+
+    private void add(Stmt stmt) {
+        if (classWriter == null || classWriter.methodCount() >= METHODS_PER_CLASS) {
+            finishClass();
+            startClass();
+        }
+        ClassWriter.Code compiled = compile(stmt);
+        if (compiled == null && !freshClass) {
+            // Perhaps it only overflowed this class's constant pool.
+            finishClass();
+            startClass();
+            compiled = compile(stmt);
+        }
+        if (compiled == null) {
+            finishMethod();
+            steps.add(new Step(null, stmt));
+            return;
+        }
+        if (method.length() > 0 && method.length() + compiled.length() > METHOD_BUDGET) finishMethod();
+        method.append(compiled);
+        freshClass = false;
+    }
+
+    private ClassWriter.Code compile(Stmt stmt) {
+        code = new ClassWriter.Code(1);
+        try {
+            stmt.accept(this);
+        } catch (ClassWriter.Overflow e) {
+            return null;
+        }
+        // One byte is left for the return.
+        if (code.length() >= ClassWriter.LIMIT || code.maxStack() > ClassWriter.LIMIT) return null;
+        return code;
+    }
+
+    private void startClass() {
+        classWriter = new ClassWriter(CLASS_NAME);
+        freshClass = true;
+        method = new ClassWriter.Code(1);
+    }
+
+    private void finishMethod() {
+        if (method.length() == 0) return;
+        method.op(RETURN, 0);
+        String name = "s" + classWriter.methodCount();
+        classWriter.method(ClassWriter.ACC_STATIC, name, STEP_DESCRIPTOR, method);
+        pendingNames.add(name);
+        pendingSteps.add(steps.size());
+        steps.add(null);
+        method = new ClassWriter.Code(1);
+    }
+
+    private void finishClass() {
+        if (classWriter == null) return;
+        finishMethod();
+        if (!pendingNames.isEmpty()) {
+            try {
+                var hidden = lookup.defineHiddenClass(classWriter.toByteArray(), true);
+                for (int i = 0; i < pendingNames.size(); i++) {
+                    MethodHandle handle = hidden.findStatic(hidden.lookupClass(), pendingNames.get(i), STEP);
+                    steps.set(pendingSteps.get(i), new Step(handle, null));
+                }
+            } catch (IllegalAccessException | NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        pendingNames.clear();
+        pendingSteps.clear();
+        classWriter = null;
+    }
+
+    @Override
+    public Void visit(Stmt.Expression stmt) {
+        pop(stmt.expression.accept(this));
+        return null;
+    }
+
+    @Override
+    public Void visit(Stmt.Print stmt) {
+        code.op(ALOAD_0, 1);
+        Type type = stmt.expression.accept(this);
+        switch (type) {
+            case NUMBER -> invokeStatic(RUNTIME, "print", "(Lorg/example/lox/OutputSink;D)V", -3);
+            case BOOLEAN -> invokeStatic(RUNTIME, "print", "(Lorg/example/lox/OutputSink;Z)V", -2);
+            case STRING -> invokeStatic(RUNTIME, "print", "(Lorg/example/lox/OutputSink;Ljava/lang/CharSequence;)V", -2);
+            case NIL -> invokeStatic(RUNTIME, "printNil", "(Lorg/example/lox/OutputSink;Ljava/lang/Object;)V", -2);
+        }
+        return null;
+    }
+
+    @Override
+    public Type visit(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double d) {
+            code.op2(LDC2_W, classWriter.number(d), 2);
+            return Type.NUMBER;
+        }
+        if (value instanceof Boolean b) {
+            code.op(b ? ICONST_1 : ICONST_0, 1);
+            return Type.BOOLEAN;
+        }
+        if (value instanceof CharSequence s) {
+            ldc(classWriter.string(s.toString()));
+            return Type.STRING;
+        }
+        code.op(ACONST_NULL, 1);
+        return Type.NIL;
+    }
+
+    @Override
+    public Type visit(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Type visit(Expr.Unary expr) {
+        Type right = expr.right.accept(this);
+        return switch (expr.operator.type) {
+            case MINUS -> {
+                if (right == Type.NUMBER) {
+                    code.op(DNEG, 0);
+                    yield Type.NUMBER;
+                }
+                pop(right);
+                yield fail(Type.NUMBER, "Operand must be a number.", expr.operator.line);
+            }
+            // Only nil and false are falsey.
+            case BANG -> {
+                if (right == Type.BOOLEAN) {
+                    code.op(ICONST_1, 1);
+                    code.op(IXOR, -1);
+                } else {
+                    pop(right);
+                    code.op(right == Type.NIL ? ICONST_1 : ICONST_0, 1);
+                }
+                yield Type.BOOLEAN;
+            }
+            default -> throw new IllegalStateException("Unexpected unary operator " + expr.operator.type);
+        };
+    }
+
+    @Override
+    public Type visit(Expr.Binary expr) {
+        Type left = expr.left.accept(this);
+        Type right = expr.right.accept(this);
+        boolean numbers = left == Type.NUMBER && right == Type.NUMBER;
+        int line = expr.operator.line;
+        switch (expr.operator.type) {
+            case MINUS, SLASH, STAR -> {
+                if (!numbers) return failBoth(left, right, Type.NUMBER, "Operands must be numbers.", line);
+                code.op(switch (expr.operator.type) {
+                    case MINUS -> DSUB;
+                    case SLASH -> DDIV;
+                    default -> DMUL;
+                }, -2);
+                return Type.NUMBER;
+            }
+            case PLUS -> {
+                if (numbers) {
+                    code.op(DADD, -2);
+                    return Type.NUMBER;
+                }
+                if (left == Type.STRING && right == Type.STRING) {
+                    invokeStatic(RUNTIME, "concat",
+                            "(Ljava/lang/CharSequence;Ljava/lang/CharSequence;)Ljava/lang/CharSequence;", -1);
+                    return Type.STRING;
+                }
+                return failBoth(left, right, Type.NIL, "Operands must be two numbers or two strings.", line);
+            }
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+                if (!numbers) return failBoth(left, right, Type.BOOLEAN, "Operands must be numbers.", line);
+                compare(expr.operator.type);
+                return Type.BOOLEAN;
+            }
+            case EQUAL_EQUAL, BANG_EQUAL -> {
+                equal(left, right);
+                if (expr.operator.type == TokenType.BANG_EQUAL) {
+                    code.op(ICONST_1, 1);
+                    code.op(IXOR, -1);
+                }
+                return Type.BOOLEAN;
+            }
+            default -> {
+                pop(right);
+                pop(left);
+                code.op(ACONST_NULL, 1);
+                return Type.NIL;
+            }
+        }
+    }
+
+    /*
+     * dcmpg gives 1 for NaN and dcmpl gives -1, picked so that NaN ends up false; the sign bit of the adjusted
+     * result is the answer:
+     *   a < b   dcmpg is -1
+     *   a > b   -dcmpl is -1
+     *   a <= b  dcmpg - 1 is negative
+     *   a >= b  ~dcmpl is negative
+     * */
+    private void compare(TokenType operator) {
+        switch (operator) {
+            case LESS -> code.op(DCMPG, -3);
+            case GREATER -> {
+                code.op(DCMPL, -3);
+                code.op(INEG, 0);
+            }
+            case LESS_EQUAL -> {
+                code.op(DCMPG, -3);
+                code.op(ICONST_1, 1);
+                code.op(ISUB, -1);
+            }
+            default -> {
+                code.op(DCMPL, -3);
+                code.op(ICONST_M1, 1);
+                code.op(IXOR, -1);
+            }
+        }
+        code.op1(BIPUSH, 31, 1);
+        code.op(IUSHR, -1);
+    }
+
+    // Values.isEqual on two values of known types, leaving 1 or 0.
+    private void equal(Type left, Type right) {
+        if (left != right) {
+            pop(right);
+            pop(left);
+            code.op(ICONST_0, 1);
+            return;
+        }
+        switch (left) {
+            case NUMBER -> {
+                // Double.equals compares the bits: NaN equals NaN, 0 doesn't equal -0. lcmp leaves c in {-1, 0, 1},
+                // and c * c ^ 1 is 1 only for 0.
+                int toBits = classWriter.methodRef("java/lang/Double", "doubleToLongBits", "(D)J");
+                code.op2(INVOKESTATIC, toBits, 0);
+                code.op(DUP2_X2, 2);
+                code.op(POP2, -2);
+                code.op2(INVOKESTATIC, toBits, 0);
+                code.op(LCMP, -3);
+                code.op(DUP, 1);
+                code.op(IMUL, -1);
+                code.op(ICONST_1, 1);
+                code.op(IXOR, -1);
+            }
+            case BOOLEAN -> {
+                code.op(IXOR, -1);
+                code.op(ICONST_1, 1);
+                code.op(IXOR, -1);
+            }
+            case STRING -> invokeStatic(RUNTIME, "equal", "(Ljava/lang/CharSequence;Ljava/lang/CharSequence;)Z", -1);
+            case NIL -> {
+                code.op(POP2, -2);
+                code.op(ICONST_1, 1);
+            }
+        }
+    }
+
+    private Type failBoth(Type left, Type right, Type result, String message, int line) {
+        pop(right);
+        pop(left);
+        return fail(result, message, line);
+    }
+
+    // Throws the RuntimeError at run time, leaving a `result` on the stack as far as the verifier can tell.
+    private Type fail(Type result, String message, int line) {
+        ldc(classWriter.string(message));
+        pushInt(line);
+        switch (result) {
+            case NUMBER -> invokeStatic(RUNTIME, "failNumber", "(Ljava/lang/String;I)D", 0);
+            case BOOLEAN -> invokeStatic(RUNTIME, "failBoolean", "(Ljava/lang/String;I)Z", -1);
+            default -> invokeStatic(RUNTIME, "failNil", "(Ljava/lang/String;I)Ljava/lang/Object;", -1);
+        }
+        return result;
+    }
+
+    private void pop(Type type) {
+        code.op(type.slots == 2 ? POP2 : POP, -type.slots);
+    }
+
+    private void ldc(int index) {
+        if (index <= 0xFF) {
+            code.op1(LDC, index, 1);
+        } else {
+            code.op2(LDC_W, index, 1);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value == (byte) value) {
+            code.op1(BIPUSH, value, 1);
+        } else if (value == (short) value) {
+            code.op2(SIPUSH, value, 1);
+        } else {
+            ldc(classWriter.integer(value));
+        }
+    }
+
+    private void invokeStatic(String owner, String name, String descriptor, int stackEffect) {
+        code.op2(INVOKESTATIC, classWriter.methodRef(owner, name, descriptor), stackEffect);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.lox;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+
+/*
+ * Runs a program as JVM bytecode (`--engine=jvm`), compiled by JvmCompiler. The statements JvmCompiler couldn't
+ * fit in a class file run on a tree Interpreter in between.
+ *
+ * Compiling costs more than interpreting a statement once, so this pays off for programs that run many times:
+ * a CompiledProgram on this engine is compiled once and every execution calls the same hidden classes.
+ * */
+final class JvmEngine implements Engine {
+    private final Session session;
+    private final JvmCompiler.Program precompiled;
+    private Interpreter fallback;
+
+    JvmEngine(Session session) {
+        this(session, null);
+    }
+
+    JvmEngine(Session session, JvmCompiler.Program precompiled) {
+        this.session = session;
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        var program = precompiled != null && precompiled.statements() == statements
+                ? precompiled : JvmCompiler.compile(statements);
+        try {
+            for (var step : program.steps()) {
+                if (step.compiled() != null) {
+                    step.compiled().invokeExact(session.out);
+                } else {
+                    if (fallback == null) fallback = new Interpreter(session);
+                    fallback.execute(step.interpreted());
+                }
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.lox;
+
+/*
+ * The static methods the classes JvmCompiler generates call into, for what isn't worth spelling out in bytecode:
+ * printing, strings and runtime errors. An error is thrown from a method that claims to return the value the failed
+ * operation would have, so the code after the call still verifies without a branch.
+ * */
+final class JvmRuntime {
+    private JvmRuntime() {
+    }
+
+    static void print(OutputSink out, double value) {
+        out.println(value);
+    }
+
+    static void print(OutputSink out, boolean value) {
+        out.println(value ? "true" : "false");
+    }
+
+    static void print(OutputSink out, CharSequence value) {
+        Values.print(out, value);
+    }
+
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        return Rope.concat(left, right);
+    }
+
+    static boolean equal(CharSequence left, CharSequence right) {
+        return Rope.contentEquals(left, right);
+    }
+
+    static void printNil(OutputSink out, Object nil) {
+        Values.print(out, nil);
+    }
+
+    static double failNumber(String message, int line) {
+        throw error(message, line);
+    }
+
+    static boolean failBoolean(String message, int line) {
+        throw error(message, line);
+    }
+
+    static Object failNil(String message, int line) {
+        throw error(message, line);
+    }
+
+    // Only the line of a runtime error is reported, so the token doesn't need its lexeme.
+    private static RuntimeError error(String message, int line) {
+        return new RuntimeError(new Token(TokenType.EOF, "", null, line), message);
+    }
+}
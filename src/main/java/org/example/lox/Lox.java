@@ -1,11 +1,14 @@
 package org.example.lox;
 
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,77 +21,147 @@ import java.util.List;
  * printStmt      → "print" expression ";" ;
  */
 public class Lox {
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-    private static final Interpreter interpreter = new Interpreter();
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        String script = null;
+        String engine = "tree";
+        boolean optimize = false;
+        boolean hashCons = false;
+        AstCache cache = null;
+        AstDumper.Format dump = null;
+        String serve = null;
+        String connect = null;
+        String profile = null;
+        String profileOut = "lox-profile.collapsed";
+        int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        int maxPending = 64;
+        // The flags that apply to one script, which --connect passes on to the server.
+        List<String> scriptOptions = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-O")) {
+                optimize = true;
+                scriptOptions.add(arg);
+            } else if (arg.equals("--hash-cons")) {
+                hashCons = true;
+                scriptOptions.add(arg);
+            } else if (arg.equals("--cache")) {
+                cache = new AstCache(AstCache.defaultDirectory());
+            } else if (arg.startsWith("--cache=")) {
+                cache = new AstCache(Paths.get(arg.substring("--cache=".length())));
+            } else if (arg.startsWith("--engine=") && Session.isEngine(arg.substring("--engine=".length()))) {
+                engine = arg.substring("--engine=".length());
+                scriptOptions.add(arg);
+            } else if (arg.equals("--dump-ast")) {
+                dump = AstDumper.Format.SEXPR;
+                scriptOptions.add(arg);
+            } else if (arg.startsWith("--dump-ast=") && AstDumper.Format.named(arg.substring("--dump-ast=".length())) != null) {
+                dump = AstDumper.Format.named(arg.substring("--dump-ast=".length()));
+                scriptOptions.add(arg);
+            } else if (arg.equals("--profile") || arg.equals("--profile=instrument")) {
+                profile = "profile";
+            } else if (arg.equals("--profile=sample")) {
+                profile = "profile-sample";
+            } else if (arg.startsWith("--profile-out=")) {
+                profileOut = arg.substring("--profile-out=".length());
+            } else if (arg.equals("--jmx")) {
+                LoxStats.INSTANCE.register();
+            } else if (arg.equals("--serve") && i + 1 < args.length) {
+                serve = args[++i];
+            } else if (arg.equals("--connect") && i + 1 < args.length) {
+                connect = args[++i];
+            } else if (arg.startsWith("--max-concurrent=")) {
+                maxConcurrent = count(arg.substring("--max-concurrent=".length()));
+            } else if (arg.startsWith("--max-pending=")) {
+                maxPending = count(arg.substring("--max-pending=".length()));
+            } else if (arg.equals("--stats")) {
+                scriptOptions.add(arg);
+            } else if (script == null && !arg.startsWith("-")) {
+                script = arg;
+            } else {
+                usage();
+            }
+        }
+        // A shared node has one frame and the line it was first parsed on, so its profile would be wrong.
+        if (profile != null && hashCons) usage();
+        if (serve != null && LoxServer.address(serve) == null || connect != null && LoxServer.address(connect) == null) {
+            usage();
+        }
+        if (serve != null) {
+            new LoxServer(serve, cache, Math.max(1, maxConcurrent), maxPending).serve();
+        } else if (connect != null) {
+            System.exit(LoxServer.submit(connect, scriptOptions, script == null ? null : Paths.get(script)));
         } else {
-            runPrompt();
+            var session = new Session(OutputSink.of(new FileOutputStream(FileDescriptor.out).getChannel(), script == null),
+                    ErrorCollector.printingTo(System.err), System.err, profile == null ? engine : profile, optimize,
+                    hashCons, cache, dump);
+            int exitCode = 0;
+            if (script != null) {
+                exitCode = session.runFile(Paths.get(script));
+            } else {
+                runPrompt(session);
+            }
+            if (session.engine() instanceof ProfilingInterpreter profiler) {
+                writeProfile(profiler, Paths.get(profileOut));
+            }
+            if (exitCode != 0) {
+                System.exit(exitCode);
+            }
         }
     }
-    static void runtimeError(RuntimeError error) {
-        System.err.printf("%s\n[line %d]%n", error.getMessage(), error.token.line);
-        hadRuntimeError = true;
-    }
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        if (hadError) {
-            System.exit(65);
+
+    private static int count(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            usage();
+            return 0;
         }
-        if (hadRuntimeError) {
-            System.exit(70);
+    }
+
+    private static void usage() {
+        System.out.println("Usage: jlox [-O] [--hash-cons] [--cache[=dir]] [--engine=name] [--dump-ast[=sexpr|json]] [--jmx] [script]");
+        System.out.println("       jlox --profile[=instrument|sample] [--profile-out=file] [script]");
+        System.out.println("       jlox --serve <unix-socket|port> [--cache[=dir]] [--max-concurrent=n] [--max-pending=n]");
+        System.out.println("       jlox --connect <unix-socket|port> [-O] [--hash-cons] [--engine=name] [--dump-ast[=sexpr|json]] script|--stats");
+        System.out.println("Engines: tree (the default), vm, specializing, jvm, closure, sealed, iterative, flat, memo");
+        System.exit(64);
+    }
+
+    private static void writeProfile(ProfilingInterpreter profiler, Path path) throws IOException {
+        try (var out = Files.newBufferedWriter(path)) {
+            profiler.writeCollapsed(out);
         }
+        profiler.report(System.err, 20);
+        System.err.printf("[profile] collapsed stacks written to %s%n", path);
     }
 
-    private static void runPrompt() throws IOException {
+    private static void runPrompt(Session session) throws IOException {
         var input = new InputStreamReader(System.in);
         var reader = new BufferedReader(input);
         System.out.println("***********************************");
         System.out.println("************** LOX ****************");
         System.out.println("***********************************");
-        while (true) {
+        // Everything entered so far, one program, so that a line costs its own length to scan and parse and
+        // runtime errors name the line they are on.
+        var document = new Document("", session);
+        int ran = 0;
+        for (int lines = 0; ; lines++) {
             System.out.print("> ");
             String line = reader.readLine();
             if (line == null) break;
-            run(line);
-            hadError = false;
-        }
-    }
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
-        var expression = parser.parse();
-        // Stop if there was a syntax error.
-        if (hadError) return;
-        System.out.println(new AstPrinter().print(expression));
-        interpreter.interpret(expression);
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+            // Lines are separated rather than ended, so an unfinished statement's error is on its own line.
+            if (lines > 0) document.edit(document.length(), 0, "\n");
+            int start = document.length();
+            document.edit(start, 0, line);
+            if (document.hadError()) {
+                // Its errors are reported; blank the line so it doesn't keep later ones from running.
+                document.edit(start, line.length(), "");
+            } else {
+                session.execute(document.statements(ran));
+                ran = document.size();
+            }
+            session.clearError();
         }
     }
-
-    private static void report(int line, String where, String message) {
-        System.err.printf("[line %d] Error%s: %s%n", line, where, message);
-        hadError = true;
-    }
-
-}
\ No newline at end of file
+}
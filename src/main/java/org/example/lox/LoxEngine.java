@@ -0,0 +1,55 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * The entry point for embedding Lox. A LoxEngine holds no state besides its settings, so one instance can be
+ * shared by any number of threads:
+ *
+ *     var program = new LoxEngine().compile("print 1 + 2;");
+ *     program.execute(new ExecutionContext(System.out::println, ErrorCollector.printingTo(System.err)));
+ * */
+public final class LoxEngine {
+    private final String engine;
+    private final boolean optimize;
+
+    public LoxEngine() {
+        this("tree", false);
+    }
+
+    /*
+     * @param engine   one of the --engine names of the command line: tree, vm, specializing, jvm, closure, sealed,
+     *                 iterative, flat or memo
+     * @param optimize run the Optimizer over every program, like -O
+     * */
+    public LoxEngine(String engine, boolean optimize) {
+        if (!Session.isEngine(engine)) throw new IllegalArgumentException("Unknown engine '" + engine + "'.");
+        this.engine = engine;
+        this.optimize = optimize;
+    }
+
+    // Scans and parses (and optimizes) `source` once, for as many executions as needed.
+    public CompiledProgram compile(String source) throws LoxSyntaxException {
+        List<String> errors = new ArrayList<>();
+        int[] firstLine = {0};
+        var collector = new ErrorCollector() {
+            @Override
+            public void syntaxError(int line, String where, String message) {
+                if (errors.isEmpty()) firstLine[0] = line;
+                errors.add(String.format("[line %d] Error%s: %s", line, where, message));
+            }
+
+            @Override
+            public void runtimeError(int line, String message) {
+                throw new IllegalStateException("Nothing runs during compilation.");
+            }
+        };
+        var session = new Session(text -> {
+        }, collector, engine);
+        List<Stmt> statements = session.parse(source);
+        if (session.hadError()) throw new LoxSyntaxException(errors, firstLine[0]);
+        if (optimize) statements = new Optimizer().optimize(statements);
+        return new CompiledProgram(List.copyOf(statements), engine);
+    }
+}
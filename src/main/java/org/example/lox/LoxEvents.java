@@ -0,0 +1,92 @@
+package org.example.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+
+/*
+ * Flight Recorder events for the three phases every program goes through, committed by Session.
+ * They are off unless a recording enables them (jdk.jfr: org.example.lox.*), and cost next to nothing then.
+ *
+ * `allocated` is what the running thread allocated during the phase, where the JVM can tell (HotSpot can).
+ * */
+final class LoxEvents {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private LoxEvents() {
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() ? threads : null;
+    }
+
+    // Bytes allocated by the current thread so far, or 0.
+    static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    @Name("org.example.lox.Scan")
+    @Label("Lox Scan")
+    @Category("Lox")
+    @Description("Scanner.scanTokens over one source")
+    @StackTrace(false)
+    static final class Scan extends Event {
+        @Label("Source Length")
+        @Description("Chars (bytes for a script file) scanned")
+        int sourceLength;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("org.example.lox.Parse")
+    @Label("Lox Parse")
+    @Category("Lox")
+    @Description("Parser.parse over one token buffer")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Syntax Errors")
+        boolean failed;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("org.example.lox.Interpret")
+    @Label("Lox Interpret")
+    @Category("Lox")
+    @Description("One program run on an engine")
+    @StackTrace(false)
+    static final class Interpret extends Event {
+        @Label("Engine")
+        String engine;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Runtime Error")
+        boolean failed;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.lox;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.stream.Collectors;
+
+/*
+ * The JSR-223 face of LoxEngine. Print statements write to the ScriptContext's writer. A syntax or runtime error
+ * becomes a ScriptException carrying its line. Lox has no variables yet, so bindings are accepted and ignored,
+ * and eval always returns null.
+ * */
+public class LoxScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final LoxScriptEngineFactory factory;
+    private final LoxEngine engine = new LoxEngine();
+
+    LoxScriptEngine(LoxScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        try {
+            return new Compiled(engine.compile(script));
+        } catch (LoxSyntaxException e) {
+            throw new ScriptException(e.getMessage(), filename(), e.line());
+        }
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private String filename() {
+        Object name = get(ScriptEngine.FILENAME);
+        return name == null ? null : name.toString();
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        try (var lines = new BufferedReader(reader)) {
+            return lines.lines().collect(Collectors.joining("\n"));
+        } catch (IOException | UncheckedIOException e) {
+            throw new ScriptException(e.getMessage());
+        }
+    }
+
+    private final class Compiled extends CompiledScript {
+        private final CompiledProgram program;
+
+        Compiled(CompiledProgram program) {
+            this.program = program;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            Writer writer = context.getWriter();
+            ScriptException[] failure = {null};
+            var errors = new ErrorCollector() {
+                @Override
+                public void syntaxError(int line, String where, String message) {
+                    failure[0] = new ScriptException("[line " + line + "] Error" + where + ": " + message, filename(), line);
+                }
+
+                @Override
+                public void runtimeError(int line, String message) {
+                    failure[0] = new ScriptException(message, filename(), line);
+                }
+            };
+            var out = new OutputSink() {
+                @Override
+                public void println(String text) {
+                    try {
+                        writer.write(text);
+                        writer.write(System.lineSeparator());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    try {
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            try {
+                program.execute(new ExecutionContext(out, errors));
+            } catch (UncheckedIOException e) {
+                throw new ScriptException(e.getCause());
+            }
+            if (failure[0] != null) throw failure[0];
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return LoxScriptEngine.this;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.lox;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+/*
+ * Makes Lox available through javax.script: new ScriptEngineManager().getEngineByName("lox").
+ * Registered in META-INF/services/javax.script.ScriptEngineFactory.
+ * */
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+    private static final List<String> NAMES = List.of("lox", "Lox", "jlox");
+
+    @Override
+    public String getEngineName() {
+        return "jlox";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("lox");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-lox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Lox";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.NAME -> NAMES.get(0);
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            // Every eval gets an engine of its own, so one ScriptEngine can serve any number of threads.
+            case "THREADING" -> "MULTITHREADED";
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    // A Lox string has no escapes, so text with a quote in it can't be printed as a literal.
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        if (toDisplay.indexOf('"') >= 0) {
+            throw new IllegalArgumentException("A Lox string can't contain '\"': " + toDisplay);
+        }
+        return "print \"" + toDisplay + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return String.join("\n", statements);
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new LoxScriptEngine(this);
+    }
+}
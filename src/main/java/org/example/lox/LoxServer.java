@@ -0,0 +1,365 @@
+package org.example.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * `jlox --serve <unix-socket|port>`: one warm JVM that runs the scripts it is sent, each in its own Session.
+ * A port listens on localhost only. Every connection is handled on its own virtual thread where the JVM has them
+ * (JDK 21+), on a platform thread otherwise.
+ *
+ * A connection carries any number of requests, one after the other:
+ *   request:  int n, n options (writeUTF), int length, length bytes of UTF-8 source
+ *   response: int exit code, long nanos queued, long nanos running, int length + stdout bytes, int length + stderr bytes
+ * The options are the per-script command line flags, -O, --hash-cons, --engine=NAME and --dump-ast[=FORMAT]. A request with the single option
+ * --stats gets the server's metrics as its stdout instead.
+ *
+ * At most maxConcurrent scripts run at once and at most maxPending more wait for their turn; past that a
+ * request is turned away with exit code 75 (EX_TEMPFAIL) without running, and its source is skipped rather than
+ * read into memory. A request with more than MAX_OPTIONS options or a script length outside 0 to MAX_SCRIPT_BYTES
+ * gets exit code 76 (EX_PROTOCOL) and the connection is closed, since what follows can't be trusted to be the
+ * next request.
+ * */
+final class LoxServer {
+    static final int BUSY = 75;
+    static final int BAD_REQUEST = 76;
+    static final int MAX_OPTIONS = 16;
+    static final int MAX_SCRIPT_BYTES = 64 << 20;
+
+    private final SocketAddress address;
+    private final AstCache cache;
+    private final int maxConcurrent;
+    private final int maxPending;
+    private final Semaphore running;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final Metrics metrics = new Metrics();
+
+    LoxServer(String address, AstCache cache, int maxConcurrent, int maxPending) {
+        this.address = address(address);
+        this.cache = cache;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPending = maxPending;
+        this.running = new Semaphore(maxConcurrent, true);
+    }
+
+    // A port if `address` is all digits, a Unix socket path otherwise; null if it's neither.
+    static SocketAddress address(String address) {
+        if (address.isEmpty()) return null;
+        if (address.chars().allMatch(Character::isDigit)) {
+            if (address.length() > 5 || Integer.parseInt(address) > 0xFFFF) return null;
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    void serve() throws IOException {
+        var family = address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : null;
+        ExecutorService connections = threadPerTask();
+        try (var server = family == null ? ServerSocketChannel.open() : ServerSocketChannel.open(family)) {
+            if (address instanceof UnixDomainSocketAddress unix) {
+                removeStaleSocket(unix);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteQuietly(unix.getPath())));
+            }
+            server.bind(address);
+            LoxStats.INSTANCE.register();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(report())));
+            System.err.printf("[serve] listening on %s, %d concurrent, %d pending%n", address, maxConcurrent, maxPending);
+            while (true) {
+                SocketChannel client = server.accept();
+                connections.execute(() -> handle(client));
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    /*
+     * Deletes a socket left behind by a server that didn't shut down cleanly, which nothing answers on anymore.
+     * Anything else at the path, a file or a server still running, is left alone and the server doesn't start.
+     * */
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        Path path = address.getPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!attributes.isOther()) {
+            throw new FileAlreadyExistsException(path.toString(), null, "not a socket");
+        }
+        try (var probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(address);
+            throw new FileAlreadyExistsException(path.toString(), null, "a server is already listening on it");
+        } catch (ConnectException e) {
+            Files.delete(path);
+        }
+    }
+
+    private static ExecutorService threadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                var thread = new Thread(task, "lox-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (count < 0 || count > MAX_OPTIONS) {
+                    refuse(out, "Bad request: " + count + " options.");
+                    return;
+                }
+                List<String> options = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    options.add(in.readUTF());
+                }
+                int length = in.readInt();
+                if (length < 0 || length > MAX_SCRIPT_BYTES) {
+                    refuse(out, "Bad request: a script of " + length + " bytes.");
+                    return;
+                }
+                respond(out, options, in, length);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.printf("[serve] dropped a connection: %s%n", e.getMessage());
+        }
+    }
+
+    // Turns away a request the connection can't go on from, and tells the client why.
+    private static void refuse(DataOutputStream response, String message) throws IOException {
+        System.err.printf("[serve] dropped a connection: %s%n", message);
+        byte[] error = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        response.writeInt(BAD_REQUEST);
+        response.writeLong(0);
+        response.writeLong(0);
+        response.writeInt(0);
+        response.writeInt(error.length);
+        response.write(error);
+        response.flush();
+    }
+
+    // Reads the request's `length` bytes of source only once it has been admitted.
+    private void respond(DataOutputStream response, List<String> options, DataInputStream request, int length)
+            throws IOException {
+        var stdout = new ByteArrayOutputStream();
+        var stderr = new ByteArrayOutputStream();
+        var out = new PrintStream(stdout, false, StandardCharsets.UTF_8);
+        var err = new PrintStream(stderr, false, StandardCharsets.UTF_8);
+        long id = requests.incrementAndGet();
+        long received = System.nanoTime();
+        long started = received;
+        int exitCode;
+        boolean ran = false;
+        if (options.equals(List.of("--stats"))) {
+            request.skipNBytes(length);
+            out.print(report());
+            exitCode = 0;
+        } else if (admitted.incrementAndGet() > maxConcurrent + maxPending) {
+            admitted.decrementAndGet();
+            request.skipNBytes(length);
+            err.println("Server busy.");
+            exitCode = BUSY;
+            metrics.rejected.increment();
+        } else {
+            try {
+                byte[] script = new byte[length];
+                request.readFully(script);
+                // Waiting for a slot starts once the whole request is in.
+                received = System.nanoTime();
+                running.acquireUninterruptibly();
+                started = System.nanoTime();
+                try {
+                    exitCode = run(options, script, stdout, err);
+                    ran = true;
+                } finally {
+                    running.release();
+                }
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+        long finished = System.nanoTime();
+        out.flush();
+        err.flush();
+        if (ran) metrics.record(started - received, finished - started, exitCode);
+        System.err.printf("[serve] #%d exit %d, queued %.3f ms, ran %.3f ms%n",
+                id, exitCode, (started - received) / 1e6, (finished - started) / 1e6);
+
+        response.writeInt(exitCode);
+        response.writeLong(started - received);
+        response.writeLong(finished - started);
+        response.writeInt(stdout.size());
+        stdout.writeTo(response);
+        response.writeInt(stderr.size());
+        stderr.writeTo(response);
+    }
+
+    private int run(List<String> options, byte[] script, ByteArrayOutputStream out, PrintStream err) {
+        String engine = "tree";
+        boolean optimize = false;
+        boolean hashCons = false;
+        AstDumper.Format dump = null;
+        for (String option : options) {
+            if (option.equals("-O")) {
+                optimize = true;
+            } else if (option.equals("--hash-cons")) {
+                hashCons = true;
+            } else if (option.equals("--dump-ast")) {
+                dump = AstDumper.Format.SEXPR;
+            } else if (option.startsWith("--dump-ast=") && AstDumper.Format.named(option.substring("--dump-ast=".length())) != null) {
+                dump = AstDumper.Format.named(option.substring("--dump-ast=".length()));
+            } else if (option.startsWith("--engine=") && Session.isEngine(option.substring("--engine=".length()))) {
+                engine = option.substring("--engine=".length());
+            } else {
+                err.printf("Unknown option %s.%n", option);
+                return 64;
+            }
+        }
+        var session = new Session(OutputSink.of(Channels.newChannel(out), false), ErrorCollector.printingTo(err), err,
+                engine, optimize, hashCons, cache, dump);
+        try {
+            return session.runScript(MappedSource.of(ByteBuffer.wrap(script)));
+        } catch (RuntimeException | StackOverflowError e) {
+            // A script must not take the server down with it.
+            err.printf("Internal error: %s%n", e);
+            return 70;
+        }
+    }
+
+    private String report() {
+        return metrics.report() + (cache == null ? "" : cache.report() + "\n");
+    }
+
+    /*
+     * Sends one script to a server and copies what it printed to this process's stdout and stderr.
+     * Returns the script's exit code.
+     * */
+    static int submit(String address, List<String> options, Path script) throws IOException {
+        SocketAddress server = address(address);
+        try (var channel = server instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open()) {
+            channel.connect(server);
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out.writeInt(options.size());
+            for (String option : options) {
+                out.writeUTF(option);
+            }
+            byte[] source = script == null ? new byte[0] : Files.readAllBytes(script);
+            out.writeInt(source.length);
+            out.write(source);
+            out.flush();
+
+            int exitCode = in.readInt();
+            in.readLong();
+            in.readLong();
+            System.out.write(in.readNBytes(in.readInt()));
+            System.out.flush();
+            System.err.write(in.readNBytes(in.readInt()));
+            System.err.flush();
+            return exitCode;
+        }
+    }
+
+    /*
+     * Counts and latencies of the scripts that ran, split into time spent waiting for a slot and time spent running.
+     * Latencies go into power-of-two microsecond buckets, so percentiles are upper bounds within a factor of two.
+     * */
+    private static final class Metrics {
+        private static final int BUCKETS = 40;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder queuedNanos = new LongAdder();
+        private final LongAdder runNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+        void record(long queued, long ran, int exitCode) {
+            completed.increment();
+            if (exitCode != 0) failed.increment();
+            queuedNanos.add(queued);
+            runNanos.add(ran);
+            long total = queued + ran;
+            maxNanos.accumulateAndGet(total, Math::max);
+            latency.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(total / 1000)));
+        }
+
+        String report() {
+            long count = completed.sum();
+            var report = new StringBuilder();
+            report.append(String.format("[serve] %d completed, %d failed, %d rejected%n", count, failed.sum(), rejected.sum()));
+            if (count > 0) {
+                report.append(String.format("[serve] mean queued %.3f ms, mean run %.3f ms%n",
+                        queuedNanos.sum() / 1e6 / count, runNanos.sum() / 1e6 / count));
+                report.append(String.format("[serve] latency p50 <= %s, p90 <= %s, p99 <= %s, max %.3f ms%n",
+                        percentile(count, 0.50), percentile(count, 0.90), percentile(count, 0.99), maxNanos.get() / 1e6));
+            }
+            return report.toString();
+        }
+
+        private String percentile(long count, double fraction) {
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += latency.get(bucket);
+                if (seen >= Math.ceil(count * fraction)) return String.format("%.3f ms", (1L << bucket) / 1e3);
+            }
+            return "?";
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.lox;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The counters behind LoxStatsMBean. Sessions on any thread add to them; they are only summed when read.
+ * Registering with the platform MBean server is left to the caller, since starting JMX takes longer than
+ * running most scripts.
+ * */
+final class LoxStats implements LoxStatsMBean {
+    static final LoxStats INSTANCE = new LoxStats();
+
+    final LongAdder scriptsRun = new LongAdder();
+    final LongAdder sourceChars = new LongAdder();
+    final LongAdder tokensScanned = new LongAdder();
+    final LongAdder statementsParsed = new LongAdder();
+    final LongAdder nodesEvaluated = new LongAdder();
+    final LongAdder parseErrors = new LongAdder();
+    final LongAdder runtimeErrors = new LongAdder();
+    final LongAdder scanNanos = new LongAdder();
+    final LongAdder parseNanos = new LongAdder();
+    final LongAdder interpretNanos = new LongAdder();
+    private boolean registered = false;
+
+    private LoxStats() {
+    }
+
+    synchronized void register() {
+        if (registered) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("org.example.lox:type=LoxStats"));
+            registered = true;
+        } catch (JMException e) {
+            System.err.printf("[jmx] could not register LoxStats: %s%n", e.getMessage());
+        }
+    }
+
+    @Override
+    public long getScriptsRun() {
+        return scriptsRun.sum();
+    }
+
+    @Override
+    public long getSourceChars() {
+        return sourceChars.sum();
+    }
+
+    @Override
+    public long getTokensScanned() {
+        return tokensScanned.sum();
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        long nanos = scanNanos.sum();
+        return nanos == 0 ? 0 : tokensScanned.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getStatementsParsed() {
+        return statementsParsed.sum();
+    }
+
+    @Override
+    public long getNodesEvaluated() {
+        return nodesEvaluated.sum();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    @Override
+    public double getScanSeconds() {
+        return scanNanos.sum() / 1e9;
+    }
+
+    @Override
+    public double getParseSeconds() {
+        return parseNanos.sum() / 1e9;
+    }
+
+    @Override
+    public double getInterpretSeconds() {
+        return interpretNanos.sum() / 1e9;
+    }
+}
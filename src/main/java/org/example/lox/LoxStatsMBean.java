@@ -0,0 +1,31 @@
+package org.example.lox;
+
+/*
+ * Cumulative counters over every program this JVM has scanned, parsed and run, under
+ * org.example.lox:type=LoxStats. The server registers it on startup, the command line with --jmx.
+ * */
+public interface LoxStatsMBean {
+    long getScriptsRun();
+
+    long getSourceChars();
+
+    long getTokensScanned();
+
+    // Scanner throughput over all sources so far.
+    double getTokensPerSecond();
+
+    long getStatementsParsed();
+
+    // Nodes in the programs run, which is the number evaluated when they ran to the end.
+    long getNodesEvaluated();
+
+    long getParseErrors();
+
+    long getRuntimeErrors();
+
+    double getScanSeconds();
+
+    double getParseSeconds();
+
+    double getInterpretSeconds();
+}
@@ -0,0 +1,26 @@
+package org.example.lox;
+
+import java.util.List;
+
+/*
+ * Thrown by LoxEngine.compile for a source with syntax errors. The message is the errors as jlox prints them.
+ * */
+public class LoxSyntaxException extends RuntimeException {
+    private final List<String> errors;
+    private final int line;
+
+    LoxSyntaxException(List<String> errors, int line) {
+        super(String.join("\n", errors));
+        this.errors = List.copyOf(errors);
+        this.line = line;
+    }
+
+    public List<String> errors() {
+        return errors;
+    }
+
+    // The line of the first error.
+    public int line() {
+        return line;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A script file seen through a read-only memory mapping, so the source itself never lands on the heap.
+ *
+ * Source files are UTF-8. Everything Lox gives meaning to is ASCII, so the Scanner can walk the raw bytes:
+ * index i is byte i of the file and an ASCII byte is its own char. Any other byte b comes back as the lone
+ * surrogate U+DC00 + b (the "surrogateescape" convention), which the Scanner never mistakes for Lox syntax and
+ * which lets it tell UTF-8 continuation bytes apart (see isContinuation). Text is only decoded when a lexeme is
+ * materialized through subSequence(...).toString(), and that decodes the bytes as UTF-8.
+ * */
+final class MappedSource implements CharSequence {
+    private final ByteBuffer bytes;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    static MappedSource map(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map (" + size + " bytes).");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // UTF-8 source that is already in memory, such as a script sent to the server.
+    static MappedSource of(ByteBuffer bytes) {
+        return new MappedSource(bytes);
+    }
+
+    // The mapped bytes, positioned at the start. The mapping is shared, so callers must not write to it.
+    ByteBuffer bytes() {
+        return bytes.duplicate();
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        byte b = bytes.get(index);
+        return b >= 0 ? (char) b : (char) (0xDC00 | b & 0xFF);
+    }
+
+    // True for the escaped second, third or fourth byte of a UTF-8 sequence.
+    static boolean isContinuation(char c) {
+        return c >= 0xDC80 && c <= 0xDCBF;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new MappedSource(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] text = new byte[bytes.limit()];
+        bytes.get(0, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
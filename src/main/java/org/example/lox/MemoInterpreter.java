@@ -0,0 +1,153 @@
+package org.example.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.example.lox.FlatAst.*;
+import static org.example.lox.Values.*;
+
+/*
+ * The tree Interpreter for programs parsed with a HashConser (`--engine=memo`, which Session parses that way): a
+ * subexpression repeated in a statement is evaluated once and its value reused, as often as it recurs.
+ *
+ * The program is flattened with FlatAst.sharing(), so each statement is one node per distinct subtree, in post
+ * order. Running it is a single loop up that range that keeps every node's value in a register of its own, the
+ * node's offset into the statement, and an operator reads its operands' registers. A repeated subtree's first
+ * occurrence comes first in the order, as it does in the tree, so the first error is the Interpreter's, and only
+ * a node that can't fail is ever shared across lines. A CompiledProgram flattens its program once, when it's
+ * compiled.
+ *
+ * Registers hold values as the IterativeInterpreter's stack does, a double in `numbers` unless the slot in
+ * `others` holds something other than UNBOXED.
+ * */
+final class MemoInterpreter implements Engine {
+    private static final Object UNBOXED = new Object();
+    private final Session session;
+    private final Program precompiled;
+    private double[] numbers = new double[64];
+    private Object[] others = new Object[64];
+
+    record Program(List<Stmt> statements, FlatAst ast) {
+    }
+
+    MemoInterpreter(Session session) {
+        this(session, null);
+    }
+
+    MemoInterpreter(Session session, Program precompiled) {
+        this.session = session;
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        run(precompiled != null && precompiled.statements() == statements
+                ? precompiled.ast() : FlatAst.sharing(statements));
+    }
+
+    void run(FlatAst ast) {
+        int first = 0;
+        try {
+            for (int i = 0; i < ast.statements.length; i += STATEMENT_SIZE) {
+                int root = ast.statements[i + ROOT];
+                execute(ast, first, root, ast.statements[i + PRINT] == 1);
+                first = root + 1;
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        } finally {
+            // Don't hold on to the program's strings.
+            Arrays.fill(others, null);
+        }
+    }
+
+    private void execute(FlatAst ast, int first, int root, boolean print) {
+        int[] nodes = ast.nodes;
+        int registers = root - first + 1;
+        if (registers > numbers.length) {
+            numbers = new double[Math.max(registers, numbers.length * 2)];
+            others = new Object[numbers.length];
+        }
+        for (int node = first; node <= root; node++) {
+            int at = node * NODE_SIZE;
+            int register = node - first;
+            switch (nodes[at + KIND]) {
+                case NUMBER -> {
+                    numbers[register] = ast.numbers[nodes[at + VALUE]];
+                    others[register] = UNBOXED;
+                }
+                case LITERAL -> others[register] = ast.constants[nodes[at + VALUE]];
+                case BINARY -> binary(register, ast.tokens[nodes[at + VALUE]], nodes[at + FIRST] - first,
+                        nodes[at + SECOND] - first);
+                case UNARY -> unary(register, ast.tokens[nodes[at + VALUE]], nodes[at + FIRST] - first);
+                default -> {
+                    int expression = nodes[at + FIRST] - first;
+                    numbers[register] = numbers[expression];
+                    others[register] = others[expression];
+                }
+            }
+        }
+        if (!print) return;
+        int result = root - first;
+        if (others[result] == UNBOXED) {
+            session.out.println(numbers[result]);
+        } else {
+            print(session.out, others[result]);
+        }
+    }
+
+    private void number(int register, double value) {
+        numbers[register] = value;
+        others[register] = UNBOXED;
+    }
+
+    private void binary(int register, Token operator, int leftRegister, int rightRegister) {
+        double left = numbers[leftRegister];
+        Object leftOther = others[leftRegister];
+        double right = numbers[rightRegister];
+        Object rightOther = others[rightRegister];
+        if (leftOther == UNBOXED && rightOther == UNBOXED) {
+            switch (operator.type) {
+                case MINUS -> number(register, left - right);
+                case SLASH -> number(register, left / right);
+                case STAR -> number(register, left * right);
+                case PLUS -> number(register, left + right);
+                case GREATER -> others[register] = left > right;
+                case GREATER_EQUAL -> others[register] = left >= right;
+                case LESS -> others[register] = left < right;
+                case LESS_EQUAL -> others[register] = left <= right;
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> others[register] = Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+                case EQUAL_EQUAL -> others[register] = Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+                default -> others[register] = null;
+            }
+            return;
+        }
+        Object a = leftOther == UNBOXED ? (Object) left : leftOther;
+        Object b = rightOther == UNBOXED ? (Object) right : rightOther;
+        others[register] = switch (operator.type) {
+            case PLUS -> {
+                if (a instanceof CharSequence l && b instanceof CharSequence r) yield Rope.concat(l, r);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+            case MINUS, SLASH, STAR, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                    throw new RuntimeError(operator, "Operands must be numbers.");
+            case BANG_EQUAL -> !isEqual(a, b);
+            case EQUAL_EQUAL -> isEqual(a, b);
+            default -> null;
+        };
+    }
+
+    private void unary(int register, Token operator, int rightRegister) {
+        Object other = others[rightRegister];
+        switch (operator.type) {
+            case MINUS -> {
+                if (other != UNBOXED) throw new RuntimeError(operator, "Operand must be a number.");
+                number(register, -numbers[rightRegister]);
+            }
+            // Numbers are always truthy.
+            case BANG -> others[register] = other != UNBOXED && !isTruthy(other);
+            default -> others[register] = null;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package org.example.lox;
+
+import static org.example.lox.Values.*;
+
+/*
+ * Executable, self-specializing counterpart of the Expr/Stmt classes, used by the SpecializingInterpreter.
+ *
+ * A node starts out uninitialized. The first time it runs it looks at the operand types it actually got and
+ * replaces itself in its parent with a node that only handles those types (a double-only subtract,
+ * a string-only concat...). Numeric nodes talk to each other through executeDouble, so a tree of them never
+ * checks a type or boxes an intermediate value. When a guess turns out wrong the specialized node throws
+ * UnexpectedResult or rewrites itself to the generic node, which does exactly what Interpreter does.
+ * A generic node never specializes again.
+ * */
+abstract class Node {
+    Node parent;
+
+    abstract Object execute();
+
+    double executeDouble() throws UnexpectedResult {
+        Object value = execute();
+        if (value instanceof Double d) return d;
+        throw new UnexpectedResult(value);
+    }
+
+    final <T extends Node> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    final <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, replacement);
+        replacement.parent = parent;
+        return replacement;
+    }
+
+    void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no children.");
+    }
+
+    /*
+     * Thrown by executeDouble when the node produced something that isn't a number.
+     * It carries the value so the caller can rewrite itself and carry on without evaluating anything twice.
+     * */
+    static final class UnexpectedResult extends Exception {
+        final Object result;
+
+        UnexpectedResult(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+    static final class Print extends Node {
+        private Node expression;
+        private final OutputSink out;
+
+        Print(Node expression, OutputSink out) {
+            this.expression = adopt(expression);
+            this.out = out;
+        }
+
+        @Override
+        Object execute() {
+            print(out, expression.execute());
+            return null;
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            expression = replacement;
+        }
+    }
+
+    static final class Expression extends Node {
+        private Node expression;
+
+        Expression(Node expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        Object execute() {
+            expression.execute();
+            return null;
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            expression = replacement;
+        }
+    }
+
+    static final class DoubleLiteral extends Node {
+        // Kept boxed as well so execute() hands out the parser's Double instead of allocating a new one.
+        private final Double boxed;
+        private final double value;
+
+        DoubleLiteral(Double value) {
+            this.boxed = value;
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble() {
+            return value;
+        }
+    }
+
+    static final class Literal extends Node {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+    static final class Not extends Node {
+        private Node right;
+
+        Not(Node right) {
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute() {
+            return !isTruthy(right.execute());
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            right = replacement;
+        }
+    }
+
+    abstract static class Unary extends Node {
+        Node right;
+        final Token operator;
+
+        Unary(Token operator, Node right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        final void replaceChild(Node child, Node replacement) {
+            right = replacement;
+        }
+
+        final Object deoptimize(Object operand) {
+            return replace(new GenericNegate(operator, right)).apply(operand);
+        }
+    }
+
+    static final class UninitializedNegate extends Unary {
+        UninitializedNegate(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object operand = right.execute();
+            if (operand instanceof Double d) {
+                return replace(new NegateDouble(operator, right)).compute(d);
+            }
+            return deoptimize(operand);
+        }
+    }
+
+    static final class NegateDouble extends Unary {
+        NegateDouble(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        double compute(double operand) {
+            return -operand;
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        double executeDouble() throws UnexpectedResult {
+            try {
+                return -right.executeDouble();
+            } catch (UnexpectedResult e) {
+                // Only a number can come out of a successful negation, so this is really a runtime error.
+                throw new UnexpectedResult(deoptimize(e.result));
+            }
+        }
+    }
+
+    static final class GenericNegate extends Unary {
+        GenericNegate(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        Object apply(Object operand) {
+            if (operand instanceof Double d) return -d;
+            throw new RuntimeError(operator, "Operand must be a number.");
+        }
+
+        @Override
+        Object execute() {
+            return apply(right.execute());
+        }
+    }
+
+    abstract static class Binary extends Node {
+        Node left;
+        final Token operator;
+        Node right;
+
+        Binary(Node left, Token operator, Node right) {
+            this.left = adopt(left);
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        final void replaceChild(Node child, Node replacement) {
+            if (left == child) {
+                left = replacement;
+            } else {
+                right = replacement;
+            }
+        }
+
+        final Object deoptimize(Object l, Object r) {
+            return replace(new GenericBinary(left, operator, right)).apply(l, r);
+        }
+    }
+
+    static final class UninitializedBinary extends Binary {
+        UninitializedBinary(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object l = left.execute();
+            Object r = right.execute();
+            if (l instanceof Double a && r instanceof Double b) {
+                return switch (operator.type) {
+                    case PLUS -> replace(new AddDouble(left, operator, right)).compute(a, b);
+                    case MINUS -> replace(new SubtractDouble(left, operator, right)).compute(a, b);
+                    case STAR -> replace(new MultiplyDouble(left, operator, right)).compute(a, b);
+                    case SLASH -> replace(new DivideDouble(left, operator, right)).compute(a, b);
+                    case GREATER -> replace(new GreaterDouble(left, operator, right)).compute(a, b);
+                    case GREATER_EQUAL -> replace(new GreaterEqualDouble(left, operator, right)).compute(a, b);
+                    case LESS -> replace(new LessDouble(left, operator, right)).compute(a, b);
+                    case LESS_EQUAL -> replace(new LessEqualDouble(left, operator, right)).compute(a, b);
+                    default -> deoptimize(l, r);
+                };
+            }
+            if (operator.type == TokenType.PLUS && l instanceof CharSequence a && r instanceof CharSequence b) {
+                return replace(new StringConcat(left, operator, right)).compute(a, b);
+            }
+            return deoptimize(l, r);
+        }
+    }
+
+    abstract static class DoubleArithmetic extends Binary {
+        DoubleArithmetic(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        abstract double compute(double a, double b);
+
+        @Override
+        final Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        final double executeDouble() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeDouble();
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(deoptimize(e.result, right.execute()));
+            }
+            double b;
+            try {
+                b = right.executeDouble();
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(deoptimize(a, e.result));
+            }
+            return compute(a, b);
+        }
+    }
+
+    static final class AddDouble extends DoubleArithmetic {
+        AddDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double a, double b) {
+            return a + b;
+        }
+    }
+
+    static final class SubtractDouble extends DoubleArithmetic {
+        SubtractDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double a, double b) {
+            return a - b;
+        }
+    }
+
+    static final class MultiplyDouble extends DoubleArithmetic {
+        MultiplyDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double a, double b) {
+            return a * b;
+        }
+    }
+
+    static final class DivideDouble extends DoubleArithmetic {
+        DivideDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double a, double b) {
+            return a / b;
+        }
+    }
+
+    abstract static class DoubleComparison extends Binary {
+        DoubleComparison(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        abstract boolean compute(double a, double b);
+
+        @Override
+        final Object execute() {
+            double a;
+            try {
+                a = left.executeDouble();
+            } catch (UnexpectedResult e) {
+                return deoptimize(e.result, right.execute());
+            }
+            double b;
+            try {
+                b = right.executeDouble();
+            } catch (UnexpectedResult e) {
+                return deoptimize(a, e.result);
+            }
+            return compute(a, b);
+        }
+    }
+
+    static final class GreaterDouble extends DoubleComparison {
+        GreaterDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compute(double a, double b) {
+            return a > b;
+        }
+    }
+
+    static final class GreaterEqualDouble extends DoubleComparison {
+        GreaterEqualDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compute(double a, double b) {
+            return a >= b;
+        }
+    }
+
+    static final class LessDouble extends DoubleComparison {
+        LessDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compute(double a, double b) {
+            return a < b;
+        }
+    }
+
+    static final class LessEqualDouble extends DoubleComparison {
+        LessEqualDouble(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compute(double a, double b) {
+            return a <= b;
+        }
+    }
+
+    static final class StringConcat extends Binary {
+        StringConcat(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        CharSequence compute(CharSequence a, CharSequence b) {
+            return Rope.concat(a, b);
+        }
+
+        @Override
+        Object execute() {
+            Object l = left.execute();
+            Object r = right.execute();
+            if (l instanceof CharSequence a && r instanceof CharSequence b) {
+                return compute(a, b);
+            }
+            return deoptimize(l, r);
+        }
+    }
+
+    static final class GenericBinary extends Binary {
+        GenericBinary(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute() {
+            return apply(left.execute(), right.execute());
+        }
+
+        Object apply(Object left, Object right) {
+            return switch (operator.type) {
+                case PLUS -> {
+                    if (left instanceof Double l && right instanceof Double r) yield l + r;
+                    if (left instanceof CharSequence l && right instanceof CharSequence r) yield Rope.concat(l, r);
+                    throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                }
+                case BANG_EQUAL -> !isEqual(left, right);
+                case EQUAL_EQUAL -> isEqual(left, right);
+                default -> {
+                    if (!(left instanceof Double l && right instanceof Double r)) {
+                        throw new RuntimeError(operator, "Operands must be numbers.");
+                    }
+                    yield switch (operator.type) {
+                        case MINUS -> l - r;
+                        case SLASH -> l / r;
+                        case STAR -> l * r;
+                        case GREATER -> l > r;
+                        case GREATER_EQUAL -> l >= r;
+                        case LESS -> l < r;
+                        case LESS_EQUAL -> l <= r;
+                        default -> null;
+                    };
+                }
+            };
+        }
+    }
+}
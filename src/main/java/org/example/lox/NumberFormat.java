@@ -0,0 +1,52 @@
+package org.example.lox;
+
+/*
+ * Writes numbers as ASCII straight into a byte buffer, producing exactly what Values.stringify(double) returns.
+ *
+ * Integral numbers below 10^7, the ones Double.toString writes as "123.0", take a fast path that writes their
+ * digits without building a String. Everything else (fractions, exponents, NaN, infinities) goes through
+ * Double.toString, whose shortest-representation rules would have to be copied bit for bit otherwise.
+ * */
+final class NumberFormat {
+    // Longest Double.toString result: "-1.2345678901234567E-300".
+    static final int MAX_LENGTH = 32;
+
+    private NumberFormat() {
+    }
+
+    // Writes `number` at `position`, which must have MAX_LENGTH bytes after it, and returns the position after it.
+    static int write(double number, byte[] buffer, int position) {
+        if (number == (long) number && Math.abs(number) < 1e7) {
+            long integral = (long) number;
+            if (integral == 0) {
+                if (Double.doubleToRawLongBits(number) != 0) buffer[position++] = '-';
+                buffer[position++] = '0';
+                return position;
+            }
+            if (integral < 0) {
+                buffer[position++] = '-';
+                integral = -integral;
+            }
+            int end = position + digits(integral);
+            for (int i = end - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + integral % 10);
+                integral /= 10;
+            }
+            return end;
+        }
+        String text = Values.stringify(number);
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+        return position;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.lox;
+
+/*
+ * Instruction set of the VM. Opcodes are plain bytes rather than an enum so that the dispatch loop in VM
+ * switches directly on what it reads from the chunk.
+ *
+ * CONSTANT      idx(u16)   push constants[idx]
+ * CONSTANT_LONG idx(u24)   push constants[idx]
+ * NIL, TRUE, FALSE         push the literal
+ * ADD ... LESS_EQUAL       pop b, pop a, push (a op b)
+ * EQUAL, NOT_EQUAL         pop b, pop a, push (a == b) / (a != b)
+ * NEGATE, NOT              pop a, push (op a)
+ * PRINT                    pop a and print it
+ * POP                      pop a and discard it
+ * RETURN                   stop
+ * */
+final class OpCode {
+    static final byte CONSTANT = 0;
+    static final byte CONSTANT_LONG = 1;
+    static final byte NIL = 2;
+    static final byte TRUE = 3;
+    static final byte FALSE = 4;
+    static final byte ADD = 5;
+    static final byte SUBTRACT = 6;
+    static final byte MULTIPLY = 7;
+    static final byte DIVIDE = 8;
+    static final byte GREATER = 9;
+    static final byte GREATER_EQUAL = 10;
+    static final byte LESS = 11;
+    static final byte LESS_EQUAL = 12;
+    static final byte EQUAL = 13;
+    static final byte NOT_EQUAL = 14;
+    static final byte NEGATE = 15;
+    static final byte NOT = 16;
+    static final byte PRINT = 17;
+    static final byte POP = 18;
+    static final byte RETURN = 19;
+
+    private OpCode() {
+    }
+}
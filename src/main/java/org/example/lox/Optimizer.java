@@ -0,0 +1,261 @@
+package org.example.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.example.lox.Values.*;
+
+/*
+ * Rewrites the parsed program into a smaller one that behaves the same, including which operator a runtime error
+ * is reported on:
+ * - constant subtrees are folded, but only when evaluating them could not fail, so "a" - 1 stays in the tree;
+ * - groupings are dropped, they only matter to the parser;
+ * - !!x and --x collapse to x when x is known to produce a boolean (resp. a number) or fail on its own;
+ * - x * 1, 1 * x, x / 1 and x - 0 collapse to x when x is known to produce a number.
+ *   x + 0 is left alone since -0 + 0 is 0.
+ * The tree is walked with a stack on the heap, operands before the node they belong to, so -O works on trees
+ * nested deeper than the Java stack, as the iterative engine runs them.
+ * */
+class Optimizer {
+    private int nodesBefore = 0;
+    private int nodesAfter = 0;
+
+    List<Stmt> optimize(List<Stmt> statements) {
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (Stmt stmt : statements) {
+            nodesBefore += count(stmt);
+            Stmt result = optimize(stmt);
+            nodesAfter += count(result);
+            optimized.add(result);
+        }
+        return optimized;
+    }
+
+    int nodesBefore() {
+        return nodesBefore;
+    }
+
+    int nodesRemoved() {
+        return nodesBefore - nodesAfter;
+    }
+
+    int nodesAfter() {
+        return nodesAfter;
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        if (stmt instanceof Stmt.Print print) {
+            Expr expression = optimize(print.expression);
+            return expression == print.expression ? stmt : new Stmt.Print(expression);
+        }
+        Expr expression = optimize(((Stmt.Expression) stmt).expression);
+        return expression == ((Stmt.Expression) stmt).expression ? stmt : new Stmt.Expression(expression);
+    }
+
+    private Expr optimize(Expr root) {
+        // Each node followed by its right operand's subtree, then its left's: backwards, that is post order.
+        List<Expr> order = new ArrayList<>();
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr expr = pending.pop();
+            order.add(expr);
+            if (expr instanceof Expr.Binary binary) {
+                pending.push(binary.left);
+                pending.push(binary.right);
+            } else if (expr instanceof Expr.Grouping grouping) {
+                pending.push(grouping.expression);
+            } else if (expr instanceof Expr.Unary unary) {
+                pending.push(unary.right);
+            }
+        }
+        Deque<Expr> optimized = new ArrayDeque<>();
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Expr expr = order.get(i);
+            if (expr instanceof Expr.Binary binary) {
+                Expr right = optimized.pop();
+                optimized.push(binary(binary, optimized.pop(), right));
+            } else if (expr instanceof Expr.Unary unary) {
+                optimized.push(unary(unary, optimized.pop()));
+            } else if (expr instanceof Expr.Literal) {
+                optimized.push(expr);
+            }
+            // A grouping is dropped: its expression, optimized, is already on top.
+        }
+        return settle(optimized.pop());
+    }
+
+    /*
+     * Folding + builds Ropes, so a chain of them takes linear time, but a Rope flattens itself the first time it's
+     * read, without locking, and a program may be run by many threads at once. So a folded string is made a String
+     * once nothing will fold it any further: where it becomes an operand that stays in the tree, or the root.
+     * */
+    private static Expr settle(Expr expr) {
+        if (expr instanceof Expr.Literal literal && literal.value instanceof Rope rope) {
+            return new Expr.Literal(rope.toString());
+        }
+        return expr;
+    }
+
+    private Expr binary(Expr.Binary expr, Expr left, Expr right) {
+        if (left instanceof Expr.Literal l && right instanceof Expr.Literal r) {
+            Object folded = fold(expr.operator.type, l.value, r.value);
+            if (folded != CANNOT_FOLD) return new Expr.Literal(folded);
+        }
+        left = settle(left);
+        right = settle(right);
+        switch (expr.operator.type) {
+            case STAR -> {
+                if (isOne(right) && producesNumber(left)) return left;
+                if (isOne(left) && producesNumber(right)) return right;
+            }
+            case SLASH -> {
+                if (isOne(right) && producesNumber(left)) return left;
+            }
+            case MINUS -> {
+                if (isZero(right) && producesNumber(left)) return left;
+            }
+        }
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    private Expr unary(Expr.Unary expr, Expr right) {
+        switch (expr.operator.type) {
+            case BANG -> {
+                if (right instanceof Expr.Literal literal) return new Expr.Literal(!isTruthy(literal.value));
+                if (right instanceof Expr.Unary inner && inner.operator.type == TokenType.BANG
+                        && producesBoolean(inner.right)) {
+                    return inner.right;
+                }
+            }
+            case MINUS -> {
+                if (right instanceof Expr.Literal literal && literal.value instanceof Double d) {
+                    return new Expr.Literal(-d);
+                }
+                if (right instanceof Expr.Unary inner && inner.operator.type == TokenType.MINUS
+                        && producesNumber(inner.right)) {
+                    return inner.right;
+                }
+            }
+        }
+        right = settle(right);
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    private static final Object CANNOT_FOLD = new Object();
+
+    // Same semantics as Interpreter.visit(Expr.Binary), except that where it would throw we give up instead.
+    private static Object fold(TokenType operator, Object left, Object right) {
+        switch (operator) {
+            case EQUAL_EQUAL -> {
+                return isEqual(left, right);
+            }
+            case BANG_EQUAL -> {
+                return !isEqual(left, right);
+            }
+            case PLUS -> {
+                if (left instanceof CharSequence l && right instanceof CharSequence r) return Rope.concat(l, r);
+            }
+        }
+        if (!(left instanceof Double l && right instanceof Double r)) return CANNOT_FOLD;
+        return switch (operator) {
+            case PLUS -> l + r;
+            case MINUS -> l - r;
+            case STAR -> l * r;
+            case SLASH -> l / r;
+            case GREATER -> l > r;
+            case GREATER_EQUAL -> l >= r;
+            case LESS -> l < r;
+            case LESS_EQUAL -> l <= r;
+            default -> CANNOT_FOLD;
+        };
+    }
+
+    // True when expr either evaluates to a number or fails by itself, before anything around it could.
+    // A + does when both its operands do, which is checked with a stack, since + chains can be long.
+    private static boolean producesNumber(Expr root) {
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr expr = pending.pop();
+            if (expr instanceof Expr.Binary binary && binary.operator.type == TokenType.PLUS) {
+                pending.push(binary.right);
+                pending.push(binary.left);
+                continue;
+            }
+            boolean number;
+            if (expr instanceof Expr.Literal literal) {
+                number = literal.value instanceof Double;
+            } else if (expr instanceof Expr.Unary unary) {
+                number = unary.operator.type == TokenType.MINUS;
+            } else if (expr instanceof Expr.Binary binary) {
+                number = switch (binary.operator.type) {
+                    case MINUS, STAR, SLASH -> true;
+                    default -> false;
+                };
+            } else {
+                number = false;
+            }
+            if (!number) return false;
+        }
+        return true;
+    }
+
+    // True when expr either evaluates to a boolean or fails by itself, before anything around it could.
+    private static boolean producesBoolean(Expr expr) {
+        if (expr instanceof Expr.Literal literal) return literal.value instanceof Boolean;
+        if (expr instanceof Expr.Unary unary) return unary.operator.type == TokenType.BANG;
+        if (expr instanceof Expr.Binary binary) {
+            return switch (binary.operator.type) {
+                case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL, BANG_EQUAL -> true;
+                default -> false;
+            };
+        }
+        return false;
+    }
+
+    private static boolean isOne(Expr expr) {
+        return expr instanceof Expr.Literal literal && Double.valueOf(1).equals(literal.value);
+    }
+
+    // Double.equals tells 0 and -0 apart; x - -0 is not always x.
+    private static boolean isZero(Expr expr) {
+        return expr instanceof Expr.Literal literal && Double.valueOf(0).equals(literal.value);
+    }
+
+    static long count(List<Stmt> statements) {
+        long count = 0;
+        for (Stmt stmt : statements) {
+            count += count(stmt);
+        }
+        return count;
+    }
+
+    static int count(Stmt stmt) {
+        return 1 + count(stmt instanceof Stmt.Print print ? print.expression : ((Stmt.Expression) stmt).expression);
+    }
+
+    // Trees can be nested deeper than the stack, so this mustn't recurse either.
+    private static int count(Expr root) {
+        int count = 0;
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr expr = pending.pop();
+            count++;
+            if (expr instanceof Expr.Binary binary) {
+                pending.push(binary.left);
+                pending.push(binary.right);
+            } else if (expr instanceof Expr.Grouping grouping) {
+                pending.push(grouping.expression);
+            } else if (expr instanceof Expr.Unary unary) {
+                pending.push(unary.right);
+            }
+        }
+        return count;
+    }
+}
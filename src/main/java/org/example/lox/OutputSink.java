@@ -0,0 +1,43 @@
+package org.example.lox;
+
+import java.io.PrintStream;
+import java.nio.channels.WritableByteChannel;
+
+/*
+ * Where a program's print statements go. Each execution writes to its own sink, from one thread at a time.
+ * */
+@FunctionalInterface
+public interface OutputSink {
+    void println(String text);
+
+    // Prints a number the way Lox does: 3 rather than 3.0.
+    default void println(double number) {
+        println(Values.stringify(number));
+    }
+
+    // Called once the program has finished, whether it failed or not.
+    default void flush() {
+    }
+
+    /*
+     * A sink that buffers output and writes it to `channel` in large chunks, when its buffer is full and on flush().
+     * If lineBuffered, it also writes out every line as soon as it's complete, for interactive use.
+     * */
+    static OutputSink of(WritableByteChannel channel, boolean lineBuffered) {
+        return new ChannelSink(channel, lineBuffered);
+    }
+
+    static OutputSink of(PrintStream out) {
+        return new OutputSink() {
+            @Override
+            public void println(String text) {
+                out.println(text);
+            }
+
+            @Override
+            public void flush() {
+                out.flush();
+            }
+        };
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.lox;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 import static org.example.lox.TokenType.*;
@@ -21,7 +23,7 @@ import static org.example.lox.TokenType.*;
  * <p>
  * Expression -> Equality
  * Equality -> Comparison ( ("==" | "!=") Comparison)* ;
- * Comparison -> Term ( ( "!=" | "==" ) Term )* ;
+ * Comparison -> Term ( ( ">" | ">=" | "<" | "<=" ) Term )* ;
  * Term -> Factor ( ( "-" | "+" ) Factor )* ;
  * Factor -> Unary ( ( "/" | "*" ) Unary )* ;
  * Unary -> ( "!" | "-" ) Unary
@@ -44,17 +46,30 @@ import static org.example.lox.TokenType.*;
  * ------------------------------------------------------------
  */
 class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    private final TokenBuffer.Cursor tokens;
+    private final Session session;
+    private final boolean stackSafe;
+    private final HashConser nodes;
 
-    Parser(List<Token> tokens) {
-        this.tokens = tokens;
+    Parser(TokenBuffer tokens, Session session) {
+        this(tokens, session, false, null);
+    }
+
+    /*
+     * If stackSafe, expressions are parsed without recursion, so nesting is limited by the heap and not the stack.
+     * If there are `nodes`, expression nodes come from there, so equal subtrees are shared.
+     * */
+    Parser(TokenBuffer tokens, Session session, boolean stackSafe, HashConser nodes) {
+        this.tokens = tokens.cursor();
+        this.session = session;
+        this.stackSafe = stackSafe;
+        this.nodes = nodes;
     }
 
     List<Stmt> parse() {
         List<Stmt> statements = new ArrayList<>();
         try {
-            while (!isAtEnd()) {
+            while (!tokens.isAtEnd()) {
                 statements.add(Statement());
             }
         } catch (ParseError error) {
@@ -63,6 +78,31 @@ class Parser {
         return statements;
     }
 
+    /*
+     * Parses the statement at the cursor. On a syntax error it reports it, skips to where the next statement
+     * probably starts and returns null, so the caller can carry on with the rest of the program.
+     * */
+    Stmt statementOrNull() {
+        try {
+            return Statement();
+        } catch (ParseError error) {
+            synchronize();
+            return null;
+        }
+    }
+
+    int position() {
+        return tokens.position();
+    }
+
+    void seek(int position) {
+        tokens.seek(position);
+    }
+
+    boolean isAtEnd() {
+        return tokens.isAtEnd();
+    }
+
     private Stmt Statement() {
         if (match(PRINT)) return PrintStatement();
 
@@ -82,144 +122,192 @@ class Parser {
     }
 
     /*
-     * Each method for parsing a grammar rule produces a syntax tree for that rule and returns it to the caller.
-     * When the body of the rule contains a nonterminal — a reference to another rule — we call that other rule’s method.
+     * Expressions are parsed by precedence climbing (a Pratt parser). Each token type has at most one prefix rule,
+     * for a token that starts an expression, and one infix rule with a binding power, for a token that follows
+     * one. expression(minPower) parses a prefix and then keeps taking infix operators for as long as they bind at
+     * least as tightly as minPower; a binary operator parses its right operand at one power above its own, which
+     * makes it left-associative.
+     *
+     * This builds the same trees the recursive descent over the grammar above did, without going through every
+     * precedence level for each operand. A new operator is one more line in the static block.
      * */
-    private Expr Expression() {
-        return Equality();
-    }
-
-    /**
-     * equality → comparison ( ( "!=" | "==" ) comparison )* ;
-     * The first comparison nonterminal in the body translates to the first call to comparison() in the method. We take that result and store it in a local variable.
-     * Then, the ( ... )* loop in the rule maps to a while loop. We need to know when to exit that loop.
-     * We can see that inside the rule, we must first find either a != or == token.
-     * So, if we don’t see one of those, we must be done with the sequence of equality operators.
-     * We express that check using a handy match() method
-     * The parser falls out of the loop once it hits a token that’s not an equality operator.
-     * Finally, it returns the expression. Note that if the parser never encounters an equality operator, then it never enters the loop.
-     * In that case, the equality() method effectively calls and returns comparison().
-     * In that way, this method matches an equality operator or anything of higher precedence.
-     */
-    private Expr Equality() {
-        Expr expr = Comparison();
-        while (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = Comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
+    private static final int EQUALITY = 1;
+    private static final int COMPARISON = 2;
+    private static final int TERM = 3;
+    private static final int FACTOR = 4;
+    private static final int UNARY = 5;
+
+    private interface PrefixRule {
+        Expr parse(Parser parser);
     }
 
-    private Expr Comparison() {
-        Expr expr = Term();
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = Term();
-            expr = new Expr.Binary(expr, operator, right);
+    private static final PrefixRule[] PREFIX = new PrefixRule[TokenType.values().length];
+    // 0 for tokens that don't continue an expression.
+    private static final int[] INFIX_POWER = new int[TokenType.values().length];
+
+    static {
+        for (TokenType type : new TokenType[]{FALSE, TRUE, NIL, NUMBER, STRING}) {
+            PREFIX[type.ordinal()] = Parser::literal;
         }
-        return expr;
+        PREFIX[LEFT_PAREN.ordinal()] = Parser::grouping;
+        PREFIX[BANG.ordinal()] = Parser::unary;
+        PREFIX[MINUS.ordinal()] = Parser::unary;
+
+        infix(EQUALITY, BANG_EQUAL, EQUAL_EQUAL);
+        infix(COMPARISON, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
+        infix(TERM, MINUS, PLUS);
+        infix(FACTOR, SLASH, STAR);
     }
 
-    private Expr Term() {
-        Expr expr = Factor();
-        while (match(MINUS, PLUS)) {
-            Token operator = previous();
-            Expr right = Factor();
-            expr = new Expr.Binary(expr, operator, right);
+    private static void infix(int power, TokenType... types) {
+        for (TokenType type : types) {
+            INFIX_POWER[type.ordinal()] = power;
         }
-        return expr;
     }
 
-    private Expr Factor() {
-        Expr expr = Unary();
-        while (match(SLASH, STAR)) {
-            Token operator = previous();
-            Expr right = Unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
+    private Expr Expression() {
+        return stackSafe ? expressionIteratively() : expression(EQUALITY);
     }
 
-    private Expr Unary() {
-        if (match(BANG, MINUS)) {
-            Token operator = previous();
-            Expr right = Unary();
-            return new Expr.Unary(operator, right);
+    private Expr expression(int minPower) {
+        PrefixRule prefix = PREFIX[tokens.peek().ordinal()];
+        if (prefix == null) throw error(tokens.peekToken(), "Expect expression.");
+        tokens.advance();
+        Expr expr = prefix.parse(this);
+        while (true) {
+            int power = INFIX_POWER[tokens.peek().ordinal()];
+            if (power == 0 || power < minPower) return expr;
+            tokens.advance();
+            Token operator = tokens.previousToken();
+            Expr right = expression(power + 1);
+            expr = binaryNode(expr, operator, right);
         }
-        return Primary();
     }
 
-    private Expr Primary() {
-        if (match(FALSE)) return new Expr.Literal(false);
-        if (match(TRUE)) return new Expr.Literal(true);
-        if (match(NIL)) return new Expr.Literal(null);
-        if (match(NUMBER, STRING)) {
-            return new Expr.Literal(previous().literal);
-        }
-        if (match(LEFT_PAREN)) {
-            Expr expr = Expression();
-            consume(RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
+    /*
+     * expression(EQUALITY) with its recursion turned into a loop. The calls it would make to parse the inside of
+     * a grouping, the operand of a unary operator or the right operand of a binary one push a Frame instead, and
+     * when that inner expression is complete the Frame is popped and finishes its node, just as the call would
+     * have on returning. The trees and the errors are the same.
+     * */
+    private Expr expressionIteratively() {
+        Deque<Frame> frames = new ArrayDeque<>();
+        int minPower = EQUALITY;
+        while (true) {
+            TokenType type = tokens.peek();
+            if (type == LEFT_PAREN || type == BANG || type == MINUS) {
+                tokens.advance();
+                frames.push(new Frame(tokens.previousToken(), null, minPower));
+                minPower = type == LEFT_PAREN ? EQUALITY : UNARY;
+                continue;
+            }
+            // The other prefix rules are leaves.
+            PrefixRule prefix = PREFIX[type.ordinal()];
+            if (prefix == null) throw error(tokens.peekToken(), "Expect expression.");
+            tokens.advance();
+            Expr expr = prefix.parse(this);
+            while (true) {
+                int power = INFIX_POWER[tokens.peek().ordinal()];
+                if (power != 0 && power >= minPower) {
+                    tokens.advance();
+                    frames.push(new Frame(tokens.previousToken(), expr, minPower));
+                    minPower = power + 1;
+                    break;
+                }
+                if (frames.isEmpty()) return expr;
+                Frame frame = frames.pop();
+                minPower = frame.minPower;
+                if (frame.left != null) {
+                    expr = binaryNode(frame.left, frame.operator, expr);
+                } else if (frame.operator.type == LEFT_PAREN) {
+                    consume(RIGHT_PAREN, "Expect ')' after expression.");
+                    expr = groupingNode(expr);
+                } else {
+                    expr = unaryNode(frame.operator, expr);
+                }
+            }
         }
-        throw error(peek(), "Expect expression.");
     }
 
-    private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
-        throw error(peek(), message);
+    // An unfinished grouping, unary or (with its left operand) binary node, and the power to go back to after it.
+    private record Frame(Token operator, Expr left, int minPower) {
     }
 
-    private ParseError error(Token token, String message) {
-        Lox.error(token, message);
-        return new ParseError();
+    private Expr literal() {
+        return switch (tokens.previousType()) {
+            case FALSE -> literalNode(false);
+            case TRUE -> literalNode(true);
+            case NIL -> literalNode(null);
+            default -> literalNode(tokens.previousLiteral());
+        };
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
-        }
-        return false;
+    private Expr grouping() {
+        Expr expr = Expression();
+        consume(RIGHT_PAREN, "Expect ')' after expression.");
+        return groupingNode(expr);
     }
 
-    private boolean check(TokenType type) {
-        if (isAtEnd()) return false;
-        return peek().type == type;
+    // The operand binds tighter than any binary operator, so -a * b is (-a) * b.
+    private Expr unary() {
+        Token operator = tokens.previousToken();
+        Expr right = expression(UNARY);
+        return unaryNode(operator, right);
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private Expr binaryNode(Expr left, Token operator, Expr right) {
+        return nodes == null ? new Expr.Binary(left, operator, right) : nodes.binary(left, operator, right);
     }
 
-    private boolean isAtEnd() {
-        return peek().type == EOF;
+    private Expr groupingNode(Expr expression) {
+        return nodes == null ? new Expr.Grouping(expression) : nodes.grouping(expression);
     }
 
-    private Token peek() {
-        return tokens.get(current);
+    private Expr literalNode(Object value) {
+        return nodes == null ? new Expr.Literal(value) : nodes.literal(value);
     }
 
-    private Token previous() {
-        return tokens.get(current - 1);
+    private Expr unaryNode(Token operator, Expr right) {
+        return nodes == null ? new Expr.Unary(operator, right) : nodes.unary(operator, right);
+    }
+
+    private void consume(TokenType type, String message) {
+        if (check(type)) {
+            tokens.advance();
+            return;
+        }
+        throw error(tokens.peekToken(), message);
+    }
+
+    private ParseError error(Token token, String message) {
+        session.error(token, message);
+        return new ParseError();
+    }
+
+    private boolean match(TokenType type) {
+        if (!check(type)) return false;
+        tokens.advance();
+        return true;
+    }
+
+    private boolean check(TokenType type) {
+        if (tokens.isAtEnd()) return false;
+        return tokens.check(type);
     }
 
     private static class ParseError extends RuntimeException {
     }
 
     private void synchronize() {
-        advance();
-        while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
-            switch (peek().type) {
+        tokens.advance();
+        while (!tokens.isAtEnd()) {
+            if (tokens.previousType() == SEMICOLON) return;
+            switch (tokens.peek()) {
                 case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
                     return;
                 }
             }
-            advance();
+            tokens.advance();
         }
     }
 
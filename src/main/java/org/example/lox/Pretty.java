@@ -1,12 +1,14 @@
 package org.example.lox;
 
-import org.example.lox.AstPrinter;
+import org.example.lox.AstDumper;
 import org.example.lox.Expr;
 import org.example.lox.Token;
 import org.example.lox.TokenType;
 
+import java.io.IOException;
+
 public class Pretty {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Expr expression = new Expr.Binary(
                 new Expr.Unary(
                         new Token(TokenType.MINUS, "-", null, 1),
@@ -14,6 +16,7 @@ public class Pretty {
                 new Token(TokenType.STAR, "*", null, 1),
                 new Expr.Grouping(
                         new Expr.Literal(45.67)));
-        System.out.println(new AstPrinter().print(expression));
+        new AstDumper(System.out, AstDumper.Format.SEXPR).dump(expression);
+        System.out.println();
     }
 }
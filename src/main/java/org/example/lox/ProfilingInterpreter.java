@@ -0,0 +1,240 @@
+package org.example.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The tree Interpreter with every execute and evaluateDouble wrapped, for `jlox --profile`. Each Stmt and Expr node
+ * gets a Frame, labelled with its kind and line, whose parent is the frame of the node it was evaluated under.
+ *
+ * Instrumenting (the default) takes the time on entering and leaving every node, which gives exact call counts and
+ * self/total times but costs two System.nanoTime calls per node. Sampling only moves a pointer to the current
+ * frame on entry and exit, and a background thread counts where that pointer is every millisecond; times are then
+ * samples times the interval.
+ *
+ * Literals and groupings carry no token, so they take the line of the closest enclosing node that has one. A frame
+ * is found by its node, so the tree must not share nodes: Lox doesn't take `--profile` with `--hash-cons`.
+ * */
+final class ProfilingInterpreter extends Interpreter {
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final VarHandle CURRENT;
+
+    static {
+        try {
+            CURRENT = MethodHandles.lookup().findVarHandle(ProfilingInterpreter.class, "current", Frame.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final boolean sampling;
+    private final Frame root = new Frame(null, "script", 0);
+    private final Map<Object, Frame> frames = new IdentityHashMap<>();
+    // Written with setOpaque so the sampler sees it move without a fence on every node.
+    @SuppressWarnings("unused")
+    private Frame current = root;
+    private long samples = 0;
+
+    ProfilingInterpreter(Session session, boolean sampling) {
+        super(session);
+        this.sampling = sampling;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        if (!sampling) {
+            super.interpret(statements);
+            return;
+        }
+        var sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(SAMPLE_INTERVAL);
+                ((Frame) CURRENT.getOpaque(this)).samples++;
+                samples++;
+            }
+        }, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+        try {
+            super.interpret(statements);
+        } finally {
+            sampler.interrupt();
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    void execute(Stmt stmt) {
+        Frame frame = enter(stmt);
+        try {
+            super.execute(stmt);
+        } finally {
+            exit(frame);
+        }
+    }
+
+    @Override
+    double evaluateDouble(Expr expr) {
+        Frame frame = enter(expr);
+        try {
+            return super.evaluateDouble(expr);
+        } finally {
+            exit(frame);
+        }
+    }
+
+    private Frame enter(Object node) {
+        Frame parent = (Frame) CURRENT.getOpaque(this);
+        Frame frame = frames.get(node);
+        if (frame == null) {
+            int line = line(node);
+            frame = new Frame(parent, kind(node), line == 0 ? parent.line : line);
+            parent.children.add(frame);
+            frames.put(node, frame);
+        }
+        frame.calls++;
+        CURRENT.setOpaque(this, frame);
+        if (!sampling) frame.started = System.nanoTime();
+        return frame;
+    }
+
+    private void exit(Frame frame) {
+        if (!sampling) frame.totalNanos += System.nanoTime() - frame.started;
+        CURRENT.setOpaque(this, frame.parent);
+    }
+
+    /*
+     * Collapsed stacks, one line per distinct stack: frames from the outermost in, separated by ';', then a space
+     * and the self time in microseconds (the number of samples when sampling). flamegraph.pl, speedscope and most
+     * other flame graph tools read this format.
+     * */
+    void writeCollapsed(Writer out) throws IOException {
+        Map<String, Long> stacks = new LinkedHashMap<>();
+        collapse(root, root.label, stacks);
+        for (var stack : stacks.entrySet()) {
+            if (stack.getValue() > 0) out.write(stack.getKey() + " " + stack.getValue() + "\n");
+        }
+    }
+
+    private void collapse(Frame frame, String path, Map<String, Long> stacks) {
+        stacks.merge(path, sampling ? frame.samples : TimeUnit.NANOSECONDS.toMicros(selfNanos(frame)), Long::sum);
+        for (Frame child : frame.children) {
+            collapse(child, path + ";" + child.label, stacks);
+        }
+    }
+
+    // The `limit` nodes, by kind and line, with the most self time.
+    void report(PrintStream out, int limit) {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (Frame child : root.children) {
+            tally(child, rows);
+        }
+        List<Row> top = new ArrayList<>(rows.values());
+        top.sort(Comparator.comparingLong((Row row) -> row.selfNanos).reversed());
+        if (sampling) {
+            out.printf("[profile] %d samples, one every %d ms%n", samples, TimeUnit.NANOSECONDS.toMillis(SAMPLE_INTERVAL));
+        }
+        out.printf("[profile] %10s %10s %10s  %s%n", "self ms", "total ms", "calls", "node");
+        for (Row row : top.subList(0, Math.min(limit, top.size()))) {
+            out.printf("[profile] %10.3f %10.3f %10d  %s%n", row.selfNanos / 1e6, row.totalNanos / 1e6, row.calls, row.key);
+        }
+    }
+
+    private void tally(Frame frame, Map<String, Row> rows) {
+        Row row = rows.computeIfAbsent(frame.label, Row::new);
+        row.calls += frame.calls;
+        row.selfNanos += selfNanos(frame);
+        // In 1 + 2 + 3 the inner + is inside the outer one; count the time once.
+        if (!hasAncestor(frame, frame.label)) row.totalNanos += totalNanos(frame);
+        for (Frame child : frame.children) {
+            tally(child, rows);
+        }
+    }
+
+    private static boolean hasAncestor(Frame frame, String label) {
+        for (Frame ancestor = frame.parent; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor.label.equals(label)) return true;
+        }
+        return false;
+    }
+
+    private long totalNanos(Frame frame) {
+        return sampling ? subtreeSamples(frame) * SAMPLE_INTERVAL : frame.totalNanos;
+    }
+
+    private static long subtreeSamples(Frame frame) {
+        long samples = frame.samples;
+        for (Frame child : frame.children) {
+            samples += subtreeSamples(child);
+        }
+        return samples;
+    }
+
+    private long selfNanos(Frame frame) {
+        if (sampling) return frame.samples * SAMPLE_INTERVAL;
+        long self = frame.totalNanos;
+        for (Frame child : frame.children) {
+            self -= child.totalNanos;
+        }
+        return Math.max(0, self);
+    }
+
+    private static String kind(Object node) {
+        if (node instanceof Expr.Binary binary) return "Binary(" + binary.operator.lexeme + ")";
+        if (node instanceof Expr.Unary unary) return "Unary(" + unary.operator.lexeme + ")";
+        return node.getClass().getSimpleName();
+    }
+
+    // The line of the first operator in the node, or 0 if it has none.
+    private static int line(Object node) {
+        if (node instanceof Expr.Binary binary) return binary.operator.line;
+        if (node instanceof Expr.Unary unary) return unary.operator.line;
+        if (node instanceof Expr.Grouping grouping) return line(grouping.expression);
+        if (node instanceof Stmt.Print print) return line(print.expression);
+        if (node instanceof Stmt.Expression expression) return line(expression.expression);
+        return 0;
+    }
+
+    private static final class Frame {
+        final Frame parent;
+        final String label;
+        final int line;
+        final List<Frame> children = new ArrayList<>();
+        long calls = 0;
+        long started = 0;
+        long totalNanos = 0;
+        long samples = 0;
+
+        Frame(Frame parent, String kind, int line) {
+            this.parent = parent;
+            this.label = line == 0 ? kind : kind + ":" + line;
+            this.line = line;
+        }
+    }
+
+    private static final class Row {
+        final String key;
+        long calls = 0;
+        long selfNanos = 0;
+        long totalNanos = 0;
+
+        Row(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/*
+ * A Lox string built by concatenation, kept as the two strings it joins instead of a copy of their characters.
+ * Every engine's string `+` goes through concat(), so a Lox string value is a String or a Rope, and both are
+ * told apart from other values as a CharSequence. A chain like "a" + "b" + ... + "z" then takes time and memory
+ * linear in its length, where copying both sides every time is quadratic.
+ *
+ * Short results are still plain Strings, copying a few characters is cheaper than a node. The characters of a
+ * Rope are only put together when something asks for them as one string, toString() or charAt(), and that
+ * string is kept. Printing doesn't need that: forEachPiece() hands out the Strings in order, which is how
+ * ChannelSink writes a Rope. Ropes nest as deep as the chain that built them, so nothing here recurses.
+ * */
+final class Rope implements CharSequence {
+    // Results up to this long are copied into a String.
+    private static final int SHORT = 256;
+
+    // Null once flattened.
+    private CharSequence left;
+    private CharSequence right;
+    private final int length;
+    private String flat;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    // Lox's + on two strings.
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        if (left.length() == 0) return right;
+        if (right.length() == 0) return left;
+        if (left.length() + right.length() <= SHORT) return left.toString().concat(right.toString());
+        return new Rope(left, right);
+    }
+
+    // Lox's == on two strings.
+    static boolean contentEquals(CharSequence a, CharSequence b) {
+        return a == b || a.length() == b.length() && a.toString().equals(b.toString());
+    }
+
+    // Passes every String this is made of, in order, to `action`.
+    void forEachPiece(Consumer<String> action) {
+        if (flat != null) {
+            action.accept(flat);
+            return;
+        }
+        Deque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CharSequence next = pending.pop();
+            if (next instanceof Rope rope && rope.flat == null) {
+                pending.push(rope.right);
+                pending.push(rope.left);
+            } else {
+                action.accept(next.toString());
+            }
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            var builder = new StringBuilder(length);
+            forEachPiece(builder::append);
+            flat = builder.toString();
+            // The pieces aren't needed anymore.
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rope other && contentEquals(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
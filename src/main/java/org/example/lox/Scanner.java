@@ -1,49 +1,54 @@
 package org.example.lox;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.function.IntPredicate;
 
-import static java.lang.Character.isDigit;
+import static org.example.lox.ScannerTables.*;
 import static org.example.lox.TokenType.*;
 
+/*
+ * Runs on the tables generated by GenerateScanner: a character class decides what kind of token starts at each
+ * char, operators are read by walking the operator DFA, and keywords are found by hashing an identifier where it
+ * sits in the source and comparing it in place with the one keyword that hashes to the same slot.
+ * */
 class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final CharSequence source;
+    private final TokenBuffer tokens;
+    private final Session session;
     private int start = 0;
     private int current = 0;
     private int line = 1;
-    private static final Map<String, TokenType> keywords = Map.ofEntries(
-            Map.entry("and", AND),
-            Map.entry("class", CLASS),
-            Map.entry("else", ELSE),
-            Map.entry("false", FALSE),
-            Map.entry("for", FOR),
-            Map.entry("fun", FUN),
-            Map.entry("if", IF),
-            Map.entry("nil", NIL),
-            Map.entry("or", OR),
-            Map.entry("print", PRINT),
-            Map.entry("return", RETURN),
-            Map.entry("super", SUPER),
-            Map.entry("this", THIS),
-            Map.entry("true", TRUE),
-            Map.entry("var", VAR),
-            Map.entry("while", WHILE)
-    );
-
-    Scanner(String source) {
+    Scanner(CharSequence source, Session session) {
+        this(source, new TokenBuffer(source), session);
+    }
+
+    Scanner(CharSequence source, TokenBuffer tokens, Session session) {
         this.source = source;
+        this.tokens = tokens;
+        this.session = session;
     }
 
-    List<Token> scanTokens() {
-        while (!isAtEnd()) {
+    TokenBuffer scanTokens() {
+        scanFrom(0, 1, position -> false);
+        return tokens;
+    }
+
+    /*
+     * Scans from offset `from`, which is on line `line`, until stopBefore accepts the offset the next lexeme would
+     * start at. Returns true if it stopped that way, false if it ran to the end of the source and added EOF.
+     * */
+    boolean scanFrom(int from, int line, IntPredicate stopBefore) {
+        this.current = from;
+        this.line = line;
+        while (!stopBefore.test(current)) {
+            if (isAtEnd()) {
+                tokens.add(EOF, current, 0, this.line);
+                return false;
+            }
 // We are at the beginning of the next lexeme.
             start = current;
             scanToken();
         }
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        return true;
     }
 
     private boolean isAtEnd() {
@@ -52,22 +57,15 @@ class Scanner {
 
     private void scanToken() {
         char c = advance();
-        switch (c) {
-            case '(' -> addToken(LEFT_PAREN);
-            case ')' -> addToken(RIGHT_PAREN);
-            case '{' -> addToken(LEFT_BRACE);
-            case '}' -> addToken(RIGHT_BRACE);
-            case ',' -> addToken(COMMA);
-            case '.' -> addToken(DOT);
-            case '-' -> addToken(MINUS);
-            case '+' -> addToken(PLUS);
-            case ';' -> addToken(SEMICOLON);
-            case '*' -> addToken(STAR);
-            case '!' -> addToken(match('=') ? BANG_EQUAL : BANG);
-            case '=' -> addToken(match('=') ? EQUAL_EQUAL : EQUAL);
-            case '<' -> addToken(match('=') ? LESS_EQUAL : LESS);
-            case '>' -> addToken(match('=') ? GREATER_EQUAL : GREATER);
-            case '/' -> {
+        switch (charClass(c)) {
+            case WHITESPACE_CHAR -> {
+            }
+            case NEWLINE_CHAR -> line++;
+            case DIGIT_CHAR -> number();
+            case ALPHA_CHAR -> identifier();
+            case QUOTE_CHAR -> string();
+            case OPERATOR_CHAR -> operator(c);
+            case SLASH_CHAR -> {
                 if (match('/')) {
                     // A comment goes until the end of the line.
                     while (peek() != '\n' && !isAtEnd()) advance();
@@ -84,51 +82,85 @@ class Scanner {
                     addToken(SLASH);
                 }
             }
-            case '"' -> string();
-            case ' ', '\r', '\t' -> {
-            }
-            case '\n' -> line++;
             default -> {
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlpha(c)) {
-                    identifier();
-                } else {
-                    Lox.error(line, "Unexpected character.");
-                }
+                // One error per character, not per byte, when scanning a MappedSource.
+                while (MappedSource.isContinuation(peek())) advance();
+                tokens.addError(start);
+                session.error(line, "Unexpected character.");
             }
         }
     }
 
-    private boolean isAlpha(char c) {
-        return (c >= 'a' && c <= 'z') ||
-                (c >= 'A' && c <= 'Z') ||
-                c == '_';
+    private static int charClass(char c) {
+        return c < 128 ? CHAR_CLASS[c] : OTHER_CHAR;
     }
 
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+    private static boolean isDigit(char c) {
+        return charClass(c) == DIGIT_CHAR;
+    }
+
+    private static boolean isAlphaNumeric(char c) {
+        int type = charClass(c);
+        return type == ALPHA_CHAR || type == DIGIT_CHAR;
+    }
+
+    // Longest match: follow the DFA for as long as it has a transition, then emit what the last state accepts.
+    private void operator(char first) {
+        int state = OPERATOR_TRANSITIONS[OPERATOR_COLUMN[first]];
+        while (!isAtEnd()) {
+            char c = peek();
+            int next = c < 128 ? OPERATOR_TRANSITIONS[state * OPERATOR_COLUMNS + OPERATOR_COLUMN[c]] : 0;
+            if (next == 0) break;
+            advance();
+            state = next;
+        }
+        addToken(OPERATOR_ACCEPT[state]);
     }
 
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            type = IDENTIFIER;
+        TokenType type = keyword();
+        if (type == IDENTIFIER) {
+            tokens.add(IDENTIFIER, start, current - start, line, tokens.symbols().intern(source, start, current));
+        } else {
+            addToken(type);
         }
-        addToken(type);
+    }
+
+    private TokenType keyword() {
+        int length = current - start;
+        int slot = (source.charAt(start) * KEYWORD_FIRST + source.charAt(current - 1) * KEYWORD_LAST + length)
+                & KEYWORD_MASK;
+        String keyword = KEYWORD_TEXT[slot];
+        if (keyword == null || keyword.length() != length) return IDENTIFIER;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != keyword.charAt(i)) return IDENTIFIER;
+        }
+        return KEYWORD_TYPE[slot];
     }
 
     private void number() {
         eatDigits();
+        boolean fraction = false;
         // Look for a fractional part.
         if (peek() == '.' && isDigit(peekNext())) {
             // Consume the "."
             advance();
             eatDigits();
+            fraction = true;
+        }
+        double value;
+        if (!fraction && current - start <= 15) {
+            // Integers this short are exact as doubles, so they can be read without copying the lexeme out.
+            long digits = 0;
+            for (int i = start; i < current; i++) {
+                digits = digits * 10 + (source.charAt(i) - '0');
+            }
+            value = digits;
+        } else {
+            value = Double.parseDouble(source.subSequence(start, current).toString());
         }
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        tokens.add(NUMBER, start, current - start, line, tokens.symbols().number(value));
     }
 
     private void eatDigits() {
@@ -148,14 +180,14 @@ class Scanner {
             advance();
         }
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            tokens.addError(start);
+            session.error(line, "Unterminated string.");
             return;
         }
         // The closing ".
         advance();
         // Trim the surrounding quotes.
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        tokens.add(STRING, start, current - start, line, tokens.symbols().intern(source, start + 1, current - 1));
     }
 
     private char peek() {
@@ -180,11 +212,6 @@ class Scanner {
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        tokens.add(type, start, current - start, line);
     }
 }
\ No newline at end of file
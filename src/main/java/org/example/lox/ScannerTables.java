@@ -0,0 +1,71 @@
+package org.example.lox;
+
+import static org.example.lox.TokenType.*;
+/*
+***************************************************************************************************************
+* This file was generated. Any modifications will be overriden next time the GenerateScanner tool is being run. *
+***************************************************************************************************************
+*/
+
+final class ScannerTables {
+  private ScannerTables() {
+  }
+
+  static final int OTHER_CHAR = 0;
+  static final int WHITESPACE_CHAR = 1;
+  static final int NEWLINE_CHAR = 2;
+  static final int DIGIT_CHAR = 3;
+  static final int ALPHA_CHAR = 4;
+  static final int QUOTE_CHAR = 5;
+  static final int SLASH_CHAR = 6;
+  static final int OPERATOR_CHAR = 7;
+
+  // Character class of every ASCII char. Anything outside ASCII is OTHER_CHAR.
+  static final byte[] CHAR_CLASS = {
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 7, 5, 0, 0, 0,
+      0, 0, 7, 7, 7, 7, 7, 7, 7, 6, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 0, 7, 7, 7, 7, 0, 0, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4,
+      4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 0, 0, 0, 0, 4, 0, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4,
+      4, 4, 4, 4, 4, 4, 4, 4, 4, 7, 0, 7, 0, 0,
+  };
+
+  static final int OPERATOR_COLUMNS = 15;
+
+  static final byte[] OPERATOR_COLUMN = {
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 11, 0, 0, 0, 0,
+      0, 0, 1, 2, 10, 8, 5, 7, 6, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 9, 14, 12, 13, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3, 0, 4, 0, 0,
+  };
+
+  static final byte[] OPERATOR_TRANSITIONS = {
+      0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 12, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 14, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 16, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 18, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+  };
+
+  // Token recognised on stopping in each state, null if the state is not accepting.
+  static final TokenType[] OPERATOR_ACCEPT = {
+      null, LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE, COMMA, DOT, MINUS, PLUS, SEMICOLON, STAR, BANG,
+      BANG_EQUAL, EQUAL, EQUAL_EQUAL, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL,
+  };
+
+  // keywordSlot(first, last, length) = (first * KEYWORD_FIRST + last * KEYWORD_LAST + length) & KEYWORD_MASK
+  static final int KEYWORD_FIRST = 1;
+  static final int KEYWORD_LAST = 5;
+  static final int KEYWORD_MASK = 31;
+
+  static final String[] KEYWORD_TEXT = {
+      null, null, "else", "for", "false", null, null, "class", null, "if", null, "or", null, "nil", null, "fun", null,
+      "true", "super", "var", null, "while", null, "this", "and", "print", null, null, null, null, "return", null,
+  };
+
+  static final TokenType[] KEYWORD_TYPE = {
+      null, null, ELSE, FOR, FALSE, null, null, CLASS, null, IF, null, OR, null, NIL, null, FUN, null, TRUE, SUPER, VAR,
+      null, WHILE, null, THIS, AND, PRINT, null, null, null, null, RETURN, null,
+  };
+}
@@ -0,0 +1,18 @@
+package org.example.lox;
+
+/*
+***************************************************************************************************************
+* This file was generated. Any modifications will be overriden next time the GenerateAst tool is being run. ***
+***************************************************************************************************************
+*/
+
+public sealed interface SealedExpr permits SealedExpr.Binary, SealedExpr.Grouping, SealedExpr.Literal, SealedExpr.Unary {
+  record Binary(SealedExpr left, Token operator, SealedExpr right) implements SealedExpr {
+  }
+  record Grouping(SealedExpr expression) implements SealedExpr {
+  }
+  record Literal(Object value) implements SealedExpr {
+  }
+  record Unary(Token operator, SealedExpr right) implements SealedExpr {
+  }
+}
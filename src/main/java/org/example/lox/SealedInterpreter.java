@@ -0,0 +1,180 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.lox.Values.*;
+
+/*
+ * The tree Interpreter over the record nodes GenerateAst --sealed writes (`--engine=sealed`): the same evaluation,
+ * numbers unboxed and everything else through the `boxed` register, but nodes are told apart with instanceof
+ * patterns down a sealed hierarchy instead of a double-dispatched accept call. The parser's tree is converted
+ * to records first, once for a CompiledProgram, which every execution then runs.
+ *
+ * A pattern switch would let javac check the chains below are exhaustive, but that is a preview feature on
+ * JDK 17, so each chain ends by throwing instead.
+ * */
+class SealedInterpreter implements Engine {
+    private static final Object UNBOXED = new Object();
+    private final Session session;
+    private final Program precompiled;
+    private Object boxed = UNBOXED;
+
+    record Program(List<Stmt> statements, List<SealedStmt> records) {
+    }
+
+    SealedInterpreter(Session session) {
+        this(session, null);
+    }
+
+    SealedInterpreter(Session session, Program precompiled) {
+        this.session = session;
+        this.precompiled = precompiled;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        run(precompiled != null && precompiled.statements() == statements
+                ? precompiled.records() : convert(statements));
+    }
+
+    static List<SealedStmt> convert(List<Stmt> statements) {
+        var converter = new Converter();
+        List<SealedStmt> records = new ArrayList<>(statements.size());
+        for (Stmt stmt : statements) {
+            records.add(stmt.accept(converter));
+        }
+        return List.copyOf(records);
+    }
+
+    void run(List<SealedStmt> statements) {
+        boxed = UNBOXED;
+        try {
+            for (SealedStmt stmt : statements) {
+                execute(stmt);
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        }
+    }
+
+    private void execute(SealedStmt stmt) {
+        if (stmt instanceof SealedStmt.Print print) {
+            double value = evaluateDouble(print.expression());
+            Object other = takeBoxed();
+            if (other == UNBOXED) {
+                session.out.println(value);
+            } else {
+                print(session.out, other);
+            }
+        } else if (stmt instanceof SealedStmt.Expression expression) {
+            evaluateDouble(expression.expression());
+            takeBoxed();
+        } else {
+            throw new IllegalStateException("Unexpected statement " + stmt);
+        }
+    }
+
+    private double evaluateDouble(SealedExpr expr) {
+        if (expr instanceof SealedExpr.Binary binary) return binary(binary);
+        if (expr instanceof SealedExpr.Literal literal) return spill(literal.value());
+        if (expr instanceof SealedExpr.Unary unary) return unary(unary);
+        if (expr instanceof SealedExpr.Grouping grouping) return evaluateDouble(grouping.expression());
+        throw new IllegalStateException("Unexpected expression " + expr);
+    }
+
+    private double spill(Object value) {
+        if (value instanceof Double d) return d;
+        boxed = value;
+        return Double.NaN;
+    }
+
+    private Object takeBoxed() {
+        Object value = boxed;
+        boxed = UNBOXED;
+        return value;
+    }
+
+    private double binary(SealedExpr.Binary expr) {
+        double left = evaluateDouble(expr.left());
+        Object leftOther = takeBoxed();
+        double right = evaluateDouble(expr.right());
+        Object rightOther = takeBoxed();
+        Token operator = expr.operator();
+        if (leftOther == UNBOXED && rightOther == UNBOXED) {
+            return switch (operator.type) {
+                case MINUS -> left - right;
+                case SLASH -> left / right;
+                case STAR -> left * right;
+                case PLUS -> left + right;
+                case GREATER -> spill(left > right);
+                case GREATER_EQUAL -> spill(left >= right);
+                case LESS -> spill(left < right);
+                case LESS_EQUAL -> spill(left <= right);
+                // Same comparison Double.equals makes.
+                case BANG_EQUAL -> spill(Double.doubleToLongBits(left) != Double.doubleToLongBits(right));
+                case EQUAL_EQUAL -> spill(Double.doubleToLongBits(left) == Double.doubleToLongBits(right));
+                default -> spill(null);
+            };
+        }
+        Object a = leftOther == UNBOXED ? (Object) left : leftOther;
+        Object b = rightOther == UNBOXED ? (Object) right : rightOther;
+        return spill(switch (operator.type) {
+            case PLUS -> {
+                if (a instanceof CharSequence l && b instanceof CharSequence r) yield Rope.concat(l, r);
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+            case MINUS, SLASH, STAR, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL ->
+                    throw new RuntimeError(operator, "Operands must be numbers.");
+            case BANG_EQUAL -> !isEqual(a, b);
+            case EQUAL_EQUAL -> isEqual(a, b);
+            default -> null;
+        });
+    }
+
+    private double unary(SealedExpr.Unary expr) {
+        double right = evaluateDouble(expr.right());
+        Object other = takeBoxed();
+        return switch (expr.operator().type) {
+            case MINUS -> {
+                if (other != UNBOXED) throw new RuntimeError(expr.operator(), "Operand must be a number.");
+                yield -right;
+            }
+            // Numbers are always truthy.
+            case BANG -> spill(other != UNBOXED && !isTruthy(other));
+            default -> spill(null);
+        };
+    }
+
+    private static final class Converter implements Expr.Visitor<SealedExpr>, Stmt.Visitor<SealedStmt> {
+        @Override
+        public SealedExpr visit(Expr.Binary expr) {
+            return new SealedExpr.Binary(expr.left.accept(this), expr.operator, expr.right.accept(this));
+        }
+
+        @Override
+        public SealedExpr visit(Expr.Grouping expr) {
+            return new SealedExpr.Grouping(expr.expression.accept(this));
+        }
+
+        @Override
+        public SealedExpr visit(Expr.Literal expr) {
+            return new SealedExpr.Literal(expr.value);
+        }
+
+        @Override
+        public SealedExpr visit(Expr.Unary expr) {
+            return new SealedExpr.Unary(expr.operator, expr.right.accept(this));
+        }
+
+        @Override
+        public SealedStmt visit(Stmt.Expression stmt) {
+            return new SealedStmt.Expression(stmt.expression.accept(this));
+        }
+
+        @Override
+        public SealedStmt visit(Stmt.Print stmt) {
+            return new SealedStmt.Print(stmt.expression.accept(this));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.lox;
+
+/*
+***************************************************************************************************************
+* This file was generated. Any modifications will be overriden next time the GenerateAst tool is being run. ***
+***************************************************************************************************************
+*/
+
+public sealed interface SealedStmt permits SealedStmt.Expression, SealedStmt.Print {
+  record Expression(SealedExpr expression) implements SealedStmt {
+  }
+  record Print(SealedExpr expression) implements SealedStmt {
+  }
+}
@@ -0,0 +1,320 @@
+package org.example.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * Everything one run of a program owns: where its output and errors go, whether it has failed so far, and the
+ * engine it runs on, whose state belongs to that run alone. The command line has one Session for the whole
+ * process; the server (LoxServer) creates one per submitted script and CompiledProgram one per execution,
+ * so programs can run side by side.
+ *
+ * The AstCache is the one thing sessions may share. `log` gets the [optimizer], [hash-cons] and [cache] reports.
+ * With a dump format, the (optimized) tree of every program is written to `out` before it runs. With hashCons,
+ * programs are parsed with a HashConser, which the memo engine always is.
+ * */
+final class Session {
+    private static final PrintStream NO_LOG = new PrintStream(OutputStream.nullOutputStream());
+
+    final OutputSink out;
+    private final ErrorCollector errors;
+    private final PrintStream log;
+    private final Engine engine;
+    private final boolean optimize;
+    private final boolean hashCons;
+    private final AstCache cache;
+    private final AstDumper.Format dump;
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    Session(OutputSink out, ErrorCollector errors, String engine) {
+        this(out, errors, NO_LOG, session -> engine(engine, session), false, false, null, null);
+    }
+
+    // For an engine built around something prepared ahead of the session, like a compiled program.
+    Session(OutputSink out, ErrorCollector errors, Function<Session, Engine> engine) {
+        this(out, errors, NO_LOG, engine, false, false, null, null);
+    }
+
+    Session(OutputSink out, ErrorCollector errors, PrintStream log, String engine, boolean optimize, boolean hashCons,
+            AstCache cache, AstDumper.Format dump) {
+        this(out, errors, log, session -> engine(engine, session), optimize, hashCons, cache, dump);
+    }
+
+    private Session(OutputSink out, ErrorCollector errors, PrintStream log, Function<Session, Engine> engine,
+                    boolean optimize, boolean hashCons, AstCache cache, AstDumper.Format dump) {
+        this.out = out;
+        this.errors = errors;
+        this.log = log;
+        this.engine = engine.apply(this);
+        this.optimize = optimize;
+        this.hashCons = hashCons || this.engine instanceof MemoInterpreter;
+        this.cache = cache;
+        this.dump = dump;
+    }
+
+    // A new engine of the given name that reports to `session`, or null if there's no such engine.
+    static Engine engine(String name, Session session) {
+        return switch (name) {
+            case "tree" -> new Interpreter(session);
+            case "vm" -> new VM(session);
+            case "specializing" -> new SpecializingInterpreter(session);
+            case "jvm" -> new JvmEngine(session);
+            case "closure" -> new ClosureCompiler(session);
+            case "sealed" -> new SealedInterpreter(session);
+            case "iterative" -> new IterativeInterpreter(session);
+            case "flat" -> new FlatInterpreter(session);
+            case "memo" -> new MemoInterpreter(session);
+            // Not --engine names: `--profile` and `--profile=sample` pick these.
+            case "profile" -> new ProfilingInterpreter(session, false);
+            case "profile-sample" -> new ProfilingInterpreter(session, true);
+            default -> null;
+        };
+    }
+
+    static boolean isEngine(String name) {
+        return switch (name) {
+            case "tree", "vm", "specializing", "jvm", "closure", "sealed", "iterative", "flat", "memo" -> true;
+            default -> false;
+        };
+    }
+
+    Engine engine() {
+        return engine;
+    }
+
+    boolean hadError() {
+        return hadError;
+    }
+
+    boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    // The REPL carries on after a syntax error on one line.
+    void clearError() {
+        hadError = false;
+    }
+
+    int exitCode() {
+        if (hadError) return 65;
+        if (hadRuntimeError) return 70;
+        return 0;
+    }
+
+    int runFile(Path path) throws IOException {
+        int exitCode = runScript(MappedSource.map(path));
+        if (cache != null) log.println(cache.report());
+        return exitCode;
+    }
+
+    // Runs a whole script, through the cache if there is one, and returns its exit code.
+    int runScript(MappedSource source) {
+        if (cache == null) {
+            run(source);
+            return exitCode();
+        }
+        String key = AstCache.key(source.bytes(), hashCons);
+        HashConser nodes = nodes();
+        var statements = cache.load(key, nodes);
+        if (statements != null) {
+            if (nodes != null) logSharing(nodes);
+        } else {
+            statements = parse(source);
+            if (hadError) return exitCode();
+            try {
+                cache.store(key, statements);
+            } catch (IOException e) {
+                log.printf("[cache] could not write %s: %s%n", key, e.getMessage());
+            }
+        }
+        execute(statements);
+        return exitCode();
+    }
+
+    void run(CharSequence source) {
+        var statements = parse(source);
+        // Stop if there was a syntax error.
+        if (hadError) return;
+        execute(statements);
+    }
+
+    // Both phases report to LoxStats, and to Flight Recorder when a recording asks for Lox events.
+    List<Stmt> parse(CharSequence source) {
+        var scan = new LoxEvents.Scan();
+        long allocated = scan.isEnabled() ? LoxEvents.allocatedBytes() : 0;
+        long started = System.nanoTime();
+        scan.begin();
+        Scanner scanner = new Scanner(source, this);
+        TokenBuffer tokens = scanner.scanTokens();
+        scan.end();
+        long scanned = System.nanoTime();
+        if (scan.shouldCommit()) {
+            scan.sourceLength = source.length();
+            scan.tokens = tokens.size();
+            scan.allocated = LoxEvents.allocatedBytes() - allocated;
+            scan.commit();
+        }
+
+        var parse = new LoxEvents.Parse();
+        allocated = parse.isEnabled() ? LoxEvents.allocatedBytes() : 0;
+        parse.begin();
+        HashConser nodes = nodes();
+        Parser parser = parser(tokens, nodes);
+        var statements = parser.parse();
+        parse.end();
+        if (nodes != null) logSharing(nodes);
+        long parsed = System.nanoTime();
+        if (parse.shouldCommit()) {
+            parse.tokens = tokens.size();
+            parse.statements = statements.size();
+            parse.failed = hadError;
+            parse.allocated = LoxEvents.allocatedBytes() - allocated;
+            parse.commit();
+        }
+
+        var stats = LoxStats.INSTANCE;
+        stats.sourceChars.add(source.length());
+        stats.tokensScanned.add(tokens.size());
+        stats.statementsParsed.add(statements.size());
+        stats.scanNanos.add(scanned - started);
+        stats.parseNanos.add(parsed - scanned);
+        return statements;
+    }
+
+    // Where the parser makes its nodes: a new HashConser when hash-consing, otherwise null.
+    HashConser nodes() {
+        return hashCons ? new HashConser() : null;
+    }
+
+    private void logSharing(HashConser nodes) {
+        log.printf("[hash-cons] shared %d of %d nodes%n", nodes.nodesShared(), nodes.nodesRequested());
+    }
+
+    // A Parser set up for this session's engine, as parse() and Document use it.
+    Parser parser(TokenBuffer tokens, HashConser nodes) {
+        // The iterative engine is for trees too deep to recurse over, so they mustn't be parsed recursively either.
+        return new Parser(tokens, this, engine instanceof IterativeInterpreter, nodes);
+    }
+
+    // Runs statements parsed elsewhere (the REPL's Document) as run() runs its own.
+    void execute(List<Stmt> expression) {
+        long nodes;
+        if (optimize) {
+            var optimizer = new Optimizer();
+            expression = optimizer.optimize(expression);
+            log.printf("[optimizer] removed %d of %d nodes%n", optimizer.nodesRemoved(), optimizer.nodesBefore());
+            nodes = optimizer.nodesAfter();
+        } else {
+            nodes = Optimizer.count(expression);
+        }
+        if (dump != null) dump(expression);
+        interpret(expression, nodes);
+    }
+
+    private void dump(List<Stmt> statements) {
+        try {
+            new AstDumper(new Lines(out), dump).dump(statements);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Passes text on to an OutputSink, which takes whole lines, a line at a time.
+    private static final class Lines implements Appendable {
+        private final OutputSink out;
+        private final StringBuilder line = new StringBuilder();
+
+        Lines(OutputSink out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence text) {
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (text.charAt(i) == '\n') {
+                    line.append(text, start, i);
+                    out.println(line.toString());
+                    line.setLength(0);
+                    start = i + 1;
+                }
+            }
+            line.append(text, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (c == '\n') {
+                out.println(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+            return this;
+        }
+    }
+
+    // `nodes` is how many nodes the statements have, counted once by whoever parsed or compiled them.
+    void interpret(List<Stmt> statements, long nodes) {
+        var event = new LoxEvents.Interpret();
+        long allocated = event.isEnabled() ? LoxEvents.allocatedBytes() : 0;
+        boolean failedBefore = hadRuntimeError;
+        long started = System.nanoTime();
+        event.begin();
+        try {
+            engine.interpret(statements);
+        } finally {
+            out.flush();
+            event.end();
+            if (event.shouldCommit()) {
+                event.engine = engine.getClass().getSimpleName();
+                event.statements = statements.size();
+                event.failed = hadRuntimeError && !failedBefore;
+                event.allocated = LoxEvents.allocatedBytes() - allocated;
+                event.commit();
+            }
+            var stats = LoxStats.INSTANCE;
+            stats.scriptsRun.increment();
+            stats.interpretNanos.add(System.nanoTime() - started);
+            stats.nodesEvaluated.add(nodes);
+        }
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    // Output is buffered, so it is flushed first to keep it in order with the errors on a terminal.
+    void runtimeError(RuntimeError error) {
+        out.flush();
+        errors.runtimeError(error.token.line, error.getMessage());
+        hadRuntimeError = true;
+        LoxStats.INSTANCE.runtimeErrors.increment();
+    }
+
+    private void report(int line, String where, String message) {
+        out.flush();
+        errors.syntaxError(line, where, message);
+        hadError = true;
+        LoxStats.INSTANCE.parseErrors.increment();
+    }
+}
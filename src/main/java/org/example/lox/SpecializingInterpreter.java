@@ -0,0 +1,68 @@
+package org.example.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Runs a program on self-specializing Nodes instead of visiting the Expr/Stmt trees directly.
+ * The Nodes are built once from the generated AST classes, one node per Expr/Stmt type (groupings disappear,
+ * they only exist for the parser), and then rewrite themselves as they learn which types flow through them.
+ * */
+class SpecializingInterpreter implements Engine, Expr.Visitor<Node>, Stmt.Visitor<Node> {
+    private final Session session;
+
+    SpecializingInterpreter(Session session) {
+        this.session = session;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        List<Node> nodes = new ArrayList<>(statements.size());
+        for (Stmt stmt : statements) {
+            nodes.add(stmt.accept(this));
+        }
+        try {
+            for (Node node : nodes) {
+                node.execute();
+            }
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        }
+    }
+
+    @Override
+    public Node visit(Expr.Binary expr) {
+        return new Node.UninitializedBinary(expr.left.accept(this), expr.operator, expr.right.accept(this));
+    }
+
+    @Override
+    public Node visit(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Node visit(Expr.Literal expr) {
+        if (expr.value instanceof Double d) return new Node.DoubleLiteral(d);
+        return new Node.Literal(expr.value);
+    }
+
+    @Override
+    public Node visit(Expr.Unary expr) {
+        Node right = expr.right.accept(this);
+        return switch (expr.operator.type) {
+            case BANG -> new Node.Not(right);
+            case MINUS -> new Node.UninitializedNegate(expr.operator, right);
+            default -> throw new IllegalStateException("Unexpected unary operator " + expr.operator.type);
+        };
+    }
+
+    @Override
+    public Node visit(Stmt.Expression stmt) {
+        return new Node.Expression(stmt.expression.accept(this));
+    }
+
+    @Override
+    public Node visit(Stmt.Print stmt) {
+        return new Node.Print(stmt.expression.accept(this), session.out);
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.lox;
+
+import java.util.Arrays;
+
+/*
+ * Symbol table and constant pool for one compilation: every identifier name, string literal and number literal
+ * the Scanner meets is stored here once and referred to by an int id.
+ *
+ * Because equal names and literal values share one instance, Values.isEqual and, later, variable lookup can
+ * settle most comparisons with ==. Names are looked up straight from the source text, so a repeated name
+ * costs a hash and a comparison but no allocation.
+ *
+ * Text is compared char by char against the source as the Scanner sees it. For a MappedSource that means
+ * a name or string with non-ASCII characters never matches its decoded form and is not shared, which only
+ * costs memory.
+ * */
+final class SymbolTable {
+    private Object[] constants = new Object[64];
+    private int[] hashes = new int[64];
+    private int count = 0;
+    // Open addressing over ids, stored as id + 1 so that 0 means an empty slot.
+    private int[] slots = new int[128];
+
+    int intern(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) return add(source.subSequence(start, end).toString(), hash, slot);
+            if (hashes[id] == hash && constants[id] instanceof String text && matches(text, source, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    int number(double value) {
+        long bits = Double.doubleToLongBits(value);
+        int hash = Long.hashCode(bits);
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) return add(value, hash, slot);
+            if (hashes[id] == hash && constants[id] instanceof Double d && Double.doubleToLongBits(d) == bits) {
+                return id;
+            }
+        }
+    }
+
+    Object get(int id) {
+        return constants[id];
+    }
+
+    int size() {
+        return count;
+    }
+
+    private int add(Object value, int hash, int slot) {
+        if (count == constants.length) {
+            constants = Arrays.copyOf(constants, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        constants[count] = value;
+        hashes[count] = hash;
+        slots[slot] = count + 1;
+        count++;
+        if (count * 2 > slots.length) rehash();
+        return count - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String text, CharSequence source, int start, int end) {
+        if (text.length() != end - start) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+}
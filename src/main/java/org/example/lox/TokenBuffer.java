@@ -0,0 +1,245 @@
+package org.example.lox;
+
+import java.util.Arrays;
+
+/*
+ * The Scanner's output, stored as parallel primitive arrays rather than one Token object per token:
+ * token i has type types[i], spans length[i] chars of the source from start[i], sits on line[i], and,
+ * for identifiers, strings and numbers, has its interned name or value at symbols.get(symbol[i]) (-1 otherwise).
+ *
+ * Token objects are only created on demand, by token(i), for the few places that need one:
+ * operators that end up in the AST and tokens that get reported in an error.
+ * Lexemes are likewise only copied out of the source when asked for.
+ *
+ * For a Document the arrays are a gap buffer: cut() moves the tokens from some index on to the end of the arrays,
+ * the tail, and the Scanner adds what it re-scans into the gap before them. Tail tokens store their offset and line
+ * less tailOffset and tailLine, so shiftTail() moves all of them at once, and resync() drops the ones the new tokens
+ * replace. Scanning a whole source never cuts, and the tail stays empty.
+ * */
+final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private byte[] types = new byte[1024];
+    private int[] start = new int[1024];
+    private int[] length = new int[1024];
+    private int[] line = new int[1024];
+    private int[] symbol = new int[1024];
+    private final SymbolTable symbols;
+    // Tokens before the gap, and after it.
+    private int count = 0;
+    private int tail = 0;
+    private int tailOffset = 0;
+    private int tailLine = 0;
+    // Source offsets where the Scanner reported an error, in a gap buffer of their own. They belong to no token.
+    private int[] errors = new int[0];
+    private int errorCount = 0;
+    private int errorTail = 0;
+
+    TokenBuffer(CharSequence source) {
+        this(source, new SymbolTable());
+    }
+
+    TokenBuffer(CharSequence source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        if (count + tail == types.length) grow();
+        this.types[count] = (byte) type.ordinal();
+        this.start[count] = start;
+        this.length[count] = length;
+        this.line[count] = line;
+        this.symbol[count] = -1;
+        count++;
+    }
+
+    void add(TokenType type, int start, int length, int line, int symbol) {
+        add(type, start, length, line);
+        this.symbol[count - 1] = symbol;
+    }
+
+    void addError(int offset) {
+        if (errorCount + errorTail == errors.length) errors = resize(errors, Math.max(8, errors.length * 2), errorTail);
+        errors[errorCount++] = offset;
+    }
+
+    /*
+     * Moves the gap to before token `index`, so that it and the tokens after it are the tail, along with the errors
+     * from where it starts on. Re-scanning starts at that token, or at the start of the source for the first one.
+     * */
+    void cut(int index) {
+        int offset = index == 0 ? 0 : start(index);
+        while (count > index) {
+            count--;
+            tail++;
+            int to = types.length - tail;
+            types[to] = types[count];
+            length[to] = length[count];
+            symbol[to] = symbol[count];
+            start[to] = start[count] - tailOffset;
+            line[to] = line[count] - tailLine;
+        }
+        while (count < index) {
+            int from = types.length - tail;
+            types[count] = types[from];
+            length[count] = length[from];
+            symbol[count] = symbol[from];
+            start[count] = start[from] + tailOffset;
+            line[count] = line[from] + tailLine;
+            count++;
+            tail--;
+        }
+        while (errorCount > 0 && errors[errorCount - 1] >= offset) {
+            errorTail++;
+            errors[errors.length - errorTail] = errors[--errorCount] - tailOffset;
+        }
+        while (errorTail > 0 && errors[errors.length - errorTail] + tailOffset < offset) {
+            errors[errorCount++] = errors[errors.length - errorTail] + tailOffset;
+            errorTail--;
+        }
+    }
+
+    // Moves every tail token and error by `chars` chars and `lines` lines.
+    void shiftTail(int chars, int lines) {
+        tailOffset += chars;
+        tailLine += lines;
+    }
+
+    /*
+     * Drops the tail tokens and errors that start before `offset`, which is where the Scanner is about to start a
+     * lexeme. Returns true if a tail token starts right there: from there on the tail is what scanning would add.
+     * */
+    boolean resync(int offset) {
+        while (tail > 0 && start[types.length - tail] + tailOffset < offset) tail--;
+        while (errorTail > 0 && errors[errors.length - errorTail] + tailOffset < offset) errorTail--;
+        return tail > 0 && start[types.length - tail] + tailOffset == offset;
+    }
+
+    // The index of the first tail token.
+    int gap() {
+        return count;
+    }
+
+    boolean hadError() {
+        return errorCount + errorTail > 0;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        byte[] grown = Arrays.copyOf(types, capacity);
+        System.arraycopy(types, types.length - tail, grown, capacity - tail, tail);
+        types = grown;
+        start = resize(start, capacity, tail);
+        length = resize(length, capacity, tail);
+        line = resize(line, capacity, tail);
+        symbol = resize(symbol, capacity, tail);
+    }
+
+    // A copy of a gap buffer's array with room for `capacity`, its last `tail` elements moved to the new end.
+    private static int[] resize(int[] array, int capacity, int tail) {
+        int[] resized = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, resized, capacity - tail, tail);
+        return resized;
+    }
+
+    // Where token `index` is in the arrays.
+    private int slot(int index) {
+        return index < count ? index : index + types.length - count - tail;
+    }
+
+    int size() {
+        return count + tail;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[slot(index)]];
+    }
+
+    int line(int index) {
+        return index < count ? line[index] : line[slot(index)] + tailLine;
+    }
+
+    int start(int index) {
+        return index < count ? start[index] : start[slot(index)] + tailOffset;
+    }
+
+    int length(int index) {
+        return length[slot(index)];
+    }
+
+    Object literal(int index) {
+        TokenType type = type(index);
+        if (type != TokenType.STRING && type != TokenType.NUMBER) return null;
+        return symbols.get(symbol[slot(index)]);
+    }
+
+    String lexeme(int index) {
+        TokenType type = type(index);
+        if (type.lexeme != null) return type.lexeme;
+        if (type == TokenType.IDENTIFIER) return (String) symbols.get(symbol[slot(index)]);
+        int start = start(index);
+        return source.subSequence(start, start + length(index)).toString();
+    }
+
+    Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), line(index));
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * A position in the buffer, moved forward by the Parser.
+     * The buffer always ends with an EOF token, and the cursor never moves past it.
+     * */
+    final class Cursor {
+        private int current = 0;
+
+        int position() {
+            return current;
+        }
+
+        void seek(int position) {
+            current = position;
+        }
+
+        TokenType peek() {
+            return type(current);
+        }
+
+        boolean check(TokenType type) {
+            return types[slot(current)] == type.ordinal();
+        }
+
+        boolean isAtEnd() {
+            return check(TokenType.EOF);
+        }
+
+        void advance() {
+            if (!isAtEnd()) current++;
+        }
+
+        TokenType previousType() {
+            return type(current - 1);
+        }
+
+        Object previousLiteral() {
+            return literal(current - 1);
+        }
+
+        Token previousToken() {
+            return token(current - 1);
+        }
+
+        Token peekToken() {
+            return token(current);
+        }
+    }
+}
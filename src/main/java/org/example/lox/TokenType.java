@@ -2,17 +2,24 @@ package org.example.lox;
 
 enum TokenType {
     // Single-character tokens.
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
+    LEFT_PAREN("("), RIGHT_PAREN(")"), LEFT_BRACE("{"), RIGHT_BRACE("}"),
+    COMMA(","), DOT("."), MINUS("-"), PLUS("+"), SEMICOLON(";"), SLASH("/"), STAR("*"),
     // One or two character tokens.
-    BANG, BANG_EQUAL,
-    EQUAL, EQUAL_EQUAL,
-    GREATER, GREATER_EQUAL,
-    LESS, LESS_EQUAL,
+    BANG("!"), BANG_EQUAL("!="),
+    EQUAL("="), EQUAL_EQUAL("=="),
+    GREATER(">"), GREATER_EQUAL(">="),
+    LESS("<"), LESS_EQUAL("<="),
     // Literals.
-    IDENTIFIER, STRING, NUMBER,
+    IDENTIFIER(null), STRING(null), NUMBER(null),
     // Keywords.
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
-    EOF
-}
\ No newline at end of file
+    AND("and"), CLASS("class"), ELSE("else"), FALSE("false"), FUN("fun"), FOR("for"), IF("if"), NIL("nil"), OR("or"),
+    PRINT("print"), RETURN("return"), SUPER("super"), THIS("this"), TRUE("true"), VAR("var"), WHILE("while"),
+    EOF("");
+
+    // The only text a token of this type can have, or null when it depends on the source (literals).
+    final String lexeme;
+
+    TokenType(String lexeme) {
+        this.lexeme = lexeme;
+    }
+}
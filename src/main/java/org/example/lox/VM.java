@@ -0,0 +1,131 @@
+package org.example.lox;
+
+import java.util.List;
+
+import static org.example.lox.Values.*;
+
+/*
+ * A stack machine that runs a Chunk produced by the Compiler.
+ * Instead of an accept call and a switch on the operator for every node, each instruction is one byte read
+ * and one switch in a tight loop over a preallocated operand stack.
+ * */
+class VM implements Engine {
+    private final Session session;
+    private Chunk chunk;
+    private byte[] code;
+    private int ip;
+
+    VM(Session session) {
+        this.session = session;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        chunk = new Compiler().compile(statements);
+        code = chunk.code;
+        ip = 0;
+        try {
+            run();
+        } catch (RuntimeError error) {
+            session.runtimeError(error);
+        }
+    }
+
+    private void run() {
+        Object[] constants = chunk.constants();
+        Object[] stack = new Object[chunk.maxStack];
+        int sp = 0;
+        for (; ; ) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT -> {
+                    stack[sp++] = constants[(code[ip] & 0xFF) << 8 | code[ip + 1] & 0xFF];
+                    ip += 2;
+                }
+                case OpCode.CONSTANT_LONG -> {
+                    stack[sp++] = constants[(code[ip] & 0xFF) << 16 | (code[ip + 1] & 0xFF) << 8 | code[ip + 2] & 0xFF];
+                    ip += 3;
+                }
+                case OpCode.NIL -> stack[sp++] = null;
+                case OpCode.TRUE -> stack[sp++] = true;
+                case OpCode.FALSE -> stack[sp++] = false;
+                case OpCode.ADD -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (a instanceof Double l && b instanceof Double r) {
+                        stack[sp - 1] = l + r;
+                    } else if (a instanceof CharSequence l && b instanceof CharSequence r) {
+                        stack[sp - 1] = Rope.concat(l, r);
+                    } else {
+                        throw error("Operands must be two numbers or two strings.");
+                    }
+                }
+                case OpCode.SUBTRACT -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l - r;
+                }
+                case OpCode.MULTIPLY -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l * r;
+                }
+                case OpCode.DIVIDE -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l / r;
+                }
+                case OpCode.GREATER -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l > r;
+                }
+                case OpCode.GREATER_EQUAL -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l >= r;
+                }
+                case OpCode.LESS -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l < r;
+                }
+                case OpCode.LESS_EQUAL -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double l && b instanceof Double r)) throw error("Operands must be numbers.");
+                    stack[sp - 1] = l <= r;
+                }
+                case OpCode.EQUAL -> {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = isEqual(stack[sp - 1], b);
+                }
+                case OpCode.NOT_EQUAL -> {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = !isEqual(stack[sp - 1], b);
+                }
+                case OpCode.NEGATE -> {
+                    if (!(stack[sp - 1] instanceof Double a)) throw error("Operand must be a number.");
+                    stack[sp - 1] = -a;
+                }
+                case OpCode.NOT -> stack[sp - 1] = !isTruthy(stack[sp - 1]);
+                case OpCode.PRINT -> print(session.out, stack[--sp]);
+                case OpCode.POP -> stack[--sp] = null;
+                case OpCode.RETURN -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[ip - 1]);
+            }
+        }
+    }
+
+    // Only the line of the failing instruction survives compilation, which is all Session.runtimeError reports.
+    private RuntimeError error(String message) {
+        return new RuntimeError(new Token(TokenType.EOF, "", null, chunk.lines[ip - 1]), message);
+    }
+}
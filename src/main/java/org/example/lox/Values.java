@@ -0,0 +1,50 @@
+package org.example.lox;
+
+/*
+ * Lox semantics that don't depend on how a program is executed.
+ * Every engine goes through these so that truthiness, equality and printing stay identical between them.
+ * */
+final class Values {
+    private Values() {
+    }
+
+    static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        return true;
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        // Interned names and literals, and nil == nil.
+        if (a == b) return true;
+        if (a == null) return false;
+        // A String and a Rope with the same characters are the same Lox string.
+        if (a instanceof CharSequence x && b instanceof CharSequence y) return Rope.contentEquals(x, y);
+        return a.equals(b);
+    }
+
+    static String stringify(Object object) {
+        if (object == null) return "null";
+        if (object instanceof Double d) return stringify((double) d);
+        return object.toString();
+    }
+
+    // What a print statement prints, with numbers formatted straight into the sink.
+    static void print(OutputSink out, Object value) {
+        if (value instanceof Double d) {
+            out.println((double) d);
+        } else if (value instanceof Rope rope && out instanceof ChannelSink channel) {
+            channel.println(rope);
+        } else {
+            out.println(stringify(value));
+        }
+    }
+
+    static String stringify(double number) {
+        String text = Double.toString(number);
+        if (text.endsWith(".0")) {
+            text = text.substring(0, text.length() - 2);
+        }
+        return text;
+    }
+}
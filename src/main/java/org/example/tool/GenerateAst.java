@@ -5,13 +5,25 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+/*
+ * Writes Expr.java and Stmt.java: abstract classes whose nodes are dispatched on with a Visitor.
+ *
+ * With --sealed it writes SealedExpr.java and SealedStmt.java instead, the same nodes as records under a sealed
+ * interface, for code that dispatches with instanceof patterns (see SealedInterpreter). The two sets live side by
+ * side; SealedInterpreter converts the parser's tree into records.
+ * */
 public class GenerateAst {
+    private static final String SEALED_PREFIX = "Sealed";
+
     public static void main(String[] args) throws IOException {
+        boolean sealed = args.length > 0 && args[0].equals("--sealed");
+        if (sealed) args = Arrays.copyOfRange(args, 1, args.length);
         if (args.length != 1) {
-            System.err.println("Usage: generate_ast <output directory>");
+            System.err.println("Usage: generate_ast [--sealed] <output directory>");
             var cwd = Paths.get(".").normalize().toAbsolutePath() + "/src/main/java/org/example/lox";
             System.out.println(cwd);
             args = new String[]{cwd};
@@ -21,19 +33,67 @@ public class GenerateAst {
         }
         String outputDir = args[0];
         System.out.println(args);
-        defineAst(outputDir, "Expr", Arrays.asList(
+        List<String> exprTypes = Arrays.asList(
                 "Binary   : Expr left, Token operator, Expr right",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
                 "Unary    : Token operator, Expr right"
-        ));
-        defineAst(outputDir, "Stmt", Arrays.asList(
+        );
+        List<String> stmtTypes = Arrays.asList(
                 "Expression   : Expr expression",
                 "Print : Expr expression"
-        ));
+        );
+        if (sealed) {
+            defineSealedAst(outputDir, "Expr", exprTypes);
+            defineSealedAst(outputDir, "Stmt", stmtTypes);
+        } else {
+            defineAst(outputDir, "Expr", true, exprTypes);
+            defineAst(outputDir, "Stmt", false, stmtTypes);
+        }
     }
 
-    private static void defineAst(String outputDir, String baseName, List<String> types) {
+    private static void defineSealedAst(String outputDir, String baseName, List<String> types) {
+        String interfaceName = SEALED_PREFIX + baseName;
+        String path = outputDir + "/" + interfaceName + ".java";
+        try (var writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
+            writer.println("package org.example.lox;");
+            writer.println();
+            writer.println("""
+                    /*
+                    ***************************************************************************************************************
+                    * This file was generated. Any modifications will be overriden next time the GenerateAst tool is being run. ***
+                    ***************************************************************************************************************
+                    */
+                    """);
+            List<String> permits = new ArrayList<>();
+            for (String type : types) {
+                permits.add(interfaceName + "." + type.split(":")[0].trim());
+            }
+            writer.printf("public sealed interface %s permits %s {%n", interfaceName, String.join(", ", permits));
+            for (String type : types) {
+                String className = type.split(":")[0].trim();
+                List<String> components = new ArrayList<>();
+                for (String field : type.split(":")[1].trim().split(", ")) {
+                    String fieldType = field.split(" ")[0];
+                    String name = field.split(" ")[1];
+                    // Node fields point at the other records, not at the visitor classes.
+                    if (fieldType.equals("Expr") || fieldType.equals("Stmt")) fieldType = SEALED_PREFIX + fieldType;
+                    components.add(fieldType + " " + name);
+                }
+                writer.printf("  record %s(%s) implements %s {%n", className, String.join(", ", components), interfaceName);
+                writer.println("  }");
+            }
+            writer.println("}");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param primitive also emit a DoubleVisitor and an acceptDouble method on every node, so an evaluator can pass
+     *                  numbers up the tree as primitive doubles instead of boxing every intermediate result.
+     */
+    private static void defineAst(String outputDir, String baseName, boolean primitive, List<String> types) {
         String path = outputDir + "/" + baseName + ".java";
         try (var writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
             writer.println("package org.example.lox;");
@@ -49,13 +109,19 @@ public class GenerateAst {
             writer.println("public abstract class " + baseName + " {");
             writer.println();
             writer.println("  abstract <R> R accept(Visitor<R> visitor);");
+            if (primitive) {
+                writer.println("  abstract double acceptDouble(DoubleVisitor visitor);");
+            }
             defineVisitor(writer, baseName, types);
+            if (primitive) {
+                defineDoubleVisitor(writer, baseName, types);
+            }
 
             // The AST classes.
             for (String type : types) {
                 String className = type.split(":")[0].trim();
                 String fields = type.split(":")[1].trim();
-                defineType(writer, baseName, className, fields);
+                defineType(writer, baseName, className, fields, primitive);
             }
             writer.println("}");
         } catch (IOException e) {
@@ -63,7 +129,8 @@ public class GenerateAst {
         }
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList,
+                                   boolean primitive) {
         writer.printf("  static class %s extends %s {%n", className, baseName);
         // Constructor.
         writer.printf("    %s(%s) {%n", className, fieldList);
@@ -87,6 +154,14 @@ public class GenerateAst {
                 \t     return visitor.visit(this);
                 \t}
                    """);
+        if (primitive) {
+            writer.println("""
+                    \t@Override
+                    \tdouble acceptDouble(DoubleVisitor visitor) {
+                    \t     return visitor.visitDouble(this);
+                    \t}
+                       """);
+        }
         // end visitor
         writer.println("  }");
     }
@@ -100,4 +175,13 @@ public class GenerateAst {
         writer.println("  }");
     }
 
+    private static void defineDoubleVisitor(PrintWriter writer, String baseName, List<String> types) {
+        writer.println("  interface DoubleVisitor {");
+        for (String type : types) {
+            String typeName = type.split(":")[0].trim();
+            writer.println("    double visitDouble(" + typeName + " " + baseName.toLowerCase() + ");");
+        }
+        writer.println("  }");
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package org.example.tool;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates ScannerTables.java, the lookup tables the Scanner runs on:
+ * - a character class for every ASCII char, so the Scanner never calls the Unicode-aware Character methods;
+ * - a DFA recognising the operators, built as a trie over their spellings;
+ * - a collision-free hash over the keywords, computed from the first char, last char and length of an
+ * identifier, so a keyword is found with one table probe and one in-place comparison against the source.
+ */
+public class GenerateScanner {
+    // Character classes, in the order their constants are emitted.
+    private static final List<String> CLASSES = List.of(
+            "OTHER_CHAR", "WHITESPACE_CHAR", "NEWLINE_CHAR", "DIGIT_CHAR", "ALPHA_CHAR", "QUOTE_CHAR", "SLASH_CHAR",
+            "OPERATOR_CHAR");
+
+    private static final List<String> OPERATORS = List.of(
+            "( LEFT_PAREN", ") RIGHT_PAREN", "{ LEFT_BRACE", "} RIGHT_BRACE",
+            ", COMMA", ". DOT", "- MINUS", "+ PLUS", "; SEMICOLON", "* STAR",
+            "! BANG", "!= BANG_EQUAL",
+            "= EQUAL", "== EQUAL_EQUAL",
+            "> GREATER", ">= GREATER_EQUAL",
+            "< LESS", "<= LESS_EQUAL"
+    );
+
+    private static final List<String> KEYWORDS = List.of(
+            "and AND", "class CLASS", "else ELSE", "false FALSE", "for FOR", "fun FUN", "if IF", "nil NIL",
+            "or OR", "print PRINT", "return RETURN", "super SUPER", "this THIS", "true TRUE", "var VAR", "while WHILE"
+    );
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: generate_scanner <output directory>");
+            var cwd = Paths.get(".").normalize().toAbsolutePath() + "/src/main/java/org/example/lox";
+            System.out.println(cwd);
+            args = new String[]{cwd};
+        }
+        String path = args[0] + "/ScannerTables.java";
+        try (var writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
+            writer.println("package org.example.lox;");
+            writer.println();
+            writer.println("import static org.example.lox.TokenType.*;");
+            writer.println("""
+                    /*
+                    ***************************************************************************************************************
+                    * This file was generated. Any modifications will be overriden next time the GenerateScanner tool is being run. *
+                    ***************************************************************************************************************
+                    */
+                    """);
+            writer.println("final class ScannerTables {");
+            writer.println("  private ScannerTables() {");
+            writer.println("  }");
+            writer.println();
+            defineCharClasses(writer);
+            defineOperatorDfa(writer);
+            defineKeywordHash(writer);
+            writer.println("}");
+        }
+    }
+
+    private static void defineCharClasses(PrintWriter writer) {
+        for (int i = 0; i < CLASSES.size(); i++) {
+            writer.printf("  static final int %s = %d;%n", CLASSES.get(i), i);
+        }
+        int[] classes = new int[128];
+        for (char c = 0; c < 128; c++) {
+            classes[c] = CLASSES.indexOf(classOf(c));
+        }
+        writer.println();
+        writer.println("  // Character class of every ASCII char. Anything outside ASCII is OTHER_CHAR.");
+        writer.println("  static final byte[] CHAR_CLASS = {");
+        writeRows(writer, Arrays.stream(classes).mapToObj(Integer::toString).toList());
+        writer.println("  };");
+        writer.println();
+    }
+
+    private static String classOf(char c) {
+        if (c == ' ' || c == '\r' || c == '\t') return "WHITESPACE_CHAR";
+        if (c == '\n') return "NEWLINE_CHAR";
+        if (c >= '0' && c <= '9') return "DIGIT_CHAR";
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') return "ALPHA_CHAR";
+        if (c == '"') return "QUOTE_CHAR";
+        if (c == '/') return "SLASH_CHAR";
+        for (String operator : OPERATORS) {
+            if (operator.charAt(0) == c) return "OPERATOR_CHAR";
+        }
+        return "OTHER_CHAR";
+    }
+
+    /*
+     * State 0 is the start state. Every prefix of an operator gets its own state, accepting if the prefix is
+     * an operator itself. Transitions are indexed by state * OPERATOR_COLUMNS + OPERATOR_COLUMN[c]; column 0 stands
+     * for every char that appears in no operator, and a transition to 0 means there is none.
+     * */
+    private static void defineOperatorDfa(PrintWriter writer) {
+        List<Character> alphabet = new ArrayList<>();
+        alphabet.add('\0');
+        Map<String, Integer> states = new LinkedHashMap<>();
+        states.put("", 0);
+        for (String operator : OPERATORS) {
+            String spelling = operator.split(" ")[0];
+            for (int i = 0; i < spelling.length(); i++) {
+                if (!alphabet.contains(spelling.charAt(i))) alphabet.add(spelling.charAt(i));
+                states.putIfAbsent(spelling.substring(0, i + 1), states.size());
+            }
+        }
+        String[] accept = new String[states.size()];
+        Arrays.fill(accept, "null");
+        for (String operator : OPERATORS) {
+            String[] parts = operator.split(" ");
+            accept[states.get(parts[0])] = parts[1];
+        }
+        int columns = alphabet.size();
+        int[] transitions = new int[states.size() * columns];
+        states.forEach((prefix, state) -> {
+            for (int column = 1; column < columns; column++) {
+                Integer next = states.get(prefix + alphabet.get(column));
+                if (next != null) transitions[state * columns + column] = next;
+            }
+        });
+        int[] column = new int[128];
+        for (int i = 1; i < columns; i++) {
+            column[alphabet.get(i)] = i;
+        }
+        writer.printf("  static final int OPERATOR_COLUMNS = %d;%n", columns);
+        writer.println();
+        writer.println("  static final byte[] OPERATOR_COLUMN = {");
+        writeRows(writer, Arrays.stream(column).mapToObj(Integer::toString).toList());
+        writer.println("  };");
+        writer.println();
+        writer.println("  static final byte[] OPERATOR_TRANSITIONS = {");
+        writeRows(writer, Arrays.stream(transitions).mapToObj(Integer::toString).toList());
+        writer.println("  };");
+        writer.println();
+        writer.println("  // Token recognised on stopping in each state, null if the state is not accepting.");
+        writer.println("  static final TokenType[] OPERATOR_ACCEPT = {");
+        writeRows(writer, Arrays.asList(accept));
+        writer.println("  };");
+        writer.println();
+    }
+
+    /*
+     * Looks for multipliers that send every keyword to its own slot of the smallest power-of-two table
+     * that has one.
+     * */
+    private static void defineKeywordHash(PrintWriter writer) {
+        for (int size = Integer.highestOneBit(KEYWORDS.size() * 2 - 1); ; size *= 2) {
+            for (int first = 1; first < 256; first++) {
+                for (int last = 0; last < 256; last++) {
+                    String[] slots = new String[size];
+                    boolean perfect = true;
+                    for (String keyword : KEYWORDS) {
+                        String text = keyword.split(" ")[0];
+                        int slot = hash(text, first, last, size - 1);
+                        if (slots[slot] != null) {
+                            perfect = false;
+                            break;
+                        }
+                        slots[slot] = keyword;
+                    }
+                    if (perfect) {
+                        writeKeywordHash(writer, slots, first, last);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int hash(String text, int first, int last, int mask) {
+        return (text.charAt(0) * first + text.charAt(text.length() - 1) * last + text.length()) & mask;
+    }
+
+    private static void writeKeywordHash(PrintWriter writer, String[] slots, int first, int last) {
+        writer.println("  // keywordSlot(first, last, length) = (first * KEYWORD_FIRST + last * KEYWORD_LAST + length) & KEYWORD_MASK");
+        writer.printf("  static final int KEYWORD_FIRST = %d;%n", first);
+        writer.printf("  static final int KEYWORD_LAST = %d;%n", last);
+        writer.printf("  static final int KEYWORD_MASK = %d;%n", slots.length - 1);
+        writer.println();
+        writer.println("  static final String[] KEYWORD_TEXT = {");
+        writeRows(writer, Arrays.stream(slots).map(s -> s == null ? "null" : "\"" + s.split(" ")[0] + "\"").toList());
+        writer.println("  };");
+        writer.println();
+        writer.println("  static final TokenType[] KEYWORD_TYPE = {");
+        writeRows(writer, Arrays.stream(slots).map(s -> s == null ? "null" : s.split(" ")[1]).toList());
+        writer.println("  };");
+    }
+
+    private static void writeRows(PrintWriter writer, List<String> values) {
+        var row = new StringBuilder("     ");
+        for (String value : values) {
+            if (row.length() + value.length() + 2 > 120) {
+                writer.println(row.toString().stripTrailing());
+                row.setLength(0);
+                row.append("     ");
+            }
+            row.append(' ').append(value).append(',');
+        }
+        writer.println(row.toString().stripTrailing());
+    }
+}
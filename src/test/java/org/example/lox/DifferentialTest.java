@@ -0,0 +1,141 @@
+package org.example.lox;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Runs one corpus through every engine, with and without -O, and expects exactly what the tree Interpreter prints
+ * without -O: the same stdout, the same stderr and the same exit code. The corpus has every operator on every
+ * combination of operand types the jvm engine compiles differently, each failing one in a script of its own with
+ * its operator on a line of its own, and the programs that make the jvm engine fall back or split up: string
+ * literals over 64KB and 60,000 statements, whose constants fill several hidden classes.
+ * */
+class DifferentialTest {
+    private static final String[] ENGINES = {
+            "tree", "vm", "specializing", "jvm", "closure", "sealed", "iterative", "flat", "memo"
+    };
+    private static final String[] BINARY = {"+", "-", "*", "/", "<", "<=", ">", ">=", "==", "!="};
+    private static final String[] UNARY = {"-", "!"};
+    // One or more operands of each type: -0 and NaN are where == on doubles and Lox differ.
+    private static final String[] VALUES = {
+            "0", "-0", "1.5", "(0/0)", "(1/0)", "\"\"", "\"ab\"", "true", "false", "nil", "(\"a\" + \"b\")", "(1 < 2)"
+    };
+    private static final PrintStream QUIET = new PrintStream(OutputStream.nullOutputStream());
+
+    private record Result(String stdout, String stderr, int exitCode) {
+    }
+
+    @TestFactory
+    Stream<DynamicTest> everyEngineRunsTheCorpusAsTheTreeInterpreterDoes() {
+        Map<String, String> corpus = corpus();
+        Map<String, Result> expected = new LinkedHashMap<>();
+        corpus.forEach((name, source) -> expected.put(name, run(source, "tree", false)));
+        List<DynamicTest> tests = new ArrayList<>();
+        for (String engine : ENGINES) {
+            for (boolean optimize : new boolean[]{false, true}) {
+                tests.add(DynamicTest.dynamicTest(engine + (optimize ? " -O" : ""), () -> {
+                    for (var script : corpus.entrySet()) {
+                        Result result = run(script.getValue(), engine, optimize);
+                        assertEquals(expected.get(script.getKey()), result, script.getKey());
+                    }
+                }));
+            }
+        }
+        return tests.stream();
+    }
+
+    private static Result run(String source, String engine, boolean optimize) {
+        var stdout = new StringBuilder();
+        var stderr = new ByteArrayOutputStream();
+        var errors = ErrorCollector.printingTo(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+        var session = new Session(text -> stdout.append(text).append('\n'), errors, QUIET, engine, optimize, false,
+                null, null);
+        session.run(source);
+        return new Result(stdout.toString(), stderr.toString(StandardCharsets.UTF_8), session.exitCode());
+    }
+
+    private static Map<String, String> corpus() {
+        Map<String, String> corpus = new LinkedHashMap<>();
+        for (String operator : BINARY) {
+            var passing = new StringBuilder();
+            for (String left : VALUES) {
+                for (String right : VALUES) {
+                    String expression = left + " " + operator + " " + right;
+                    if (fails("print " + expression + ";")) {
+                        // The error is the operator's, on the line it's on.
+                        corpus.put(expression, "print \"before\";\nprint " + left + "\n  " + operator + " " + right
+                                + ";\nprint \"after\";\n");
+                    } else {
+                        passing.append("print ").append(expression).append(";\n");
+                    }
+                }
+            }
+            corpus.put(operator, passing.toString());
+        }
+        for (String operator : UNARY) {
+            var passing = new StringBuilder();
+            for (String operand : VALUES) {
+                String expression = operator + operand;
+                if (fails("print " + expression + ";")) {
+                    corpus.put(expression, "print \"before\";\nprint (\n" + expression + ");\n");
+                } else {
+                    passing.append("print ").append(expression).append(";\n");
+                }
+                passing.append("print ").append(operator).append(operator).append(operand).append(";\n");
+            }
+            corpus.put("unary " + operator, passing.toString());
+        }
+
+        corpus.put("zeros and NaN", """
+                print -0; print 0 * -1; print -0 + 0; print -0 - 0; print 1 / -0;
+                print -0 == 0; print 0 == -0; print -0 != 0; print -0 < 0; print -0 >= 0;
+                print 0/0 == 0/0; print 0/0 != 0/0; print 0/0 < 1; print 0/0 >= 0/0; print -(0/0);
+                print (0/0) == nil; print nil == nil; print "" == nil; print "a" == "a"; print true == 1;
+                """);
+        corpus.put("nested errors", """
+                print "a" + (1 -
+                  nil);
+                """);
+        corpus.put("error in an operand that is fine", """
+                print (1 < 2) == (
+                  -"x");
+                """);
+        corpus.put("syntax error", "print 1;\nprint 1 +;\nprint -nil;\n");
+        corpus.put("deep", "print " + "-".repeat(500) + "1;\nprint " + "(".repeat(500) + "\"s\"" + ")".repeat(500)
+                + " + 1;\n");
+
+        String big = "x".repeat(70_000);
+        corpus.put("strings over 64KB", "print \"" + big + "\";\nprint \"" + big + "\" + \"y\";\nprint \"" + big
+                + "\" == \"" + big + "\";\nprint \"" + big + "\" + \"" + big + "\";\nprint \"" + big + "\"\n  - 1;\n");
+
+        // Distinct numbers and strings fill the constant pool, so the program is compiled into several classes.
+        var many = new StringBuilder();
+        for (int i = 0; i < 60_000; i++) {
+            switch (i % 4) {
+                case 0 -> many.append("print ").append(i).append(".25 + 0.5 * ").append(i).append(";\n");
+                case 1 -> many.append("print \"s").append(i).append("\" + \"t\";\n");
+                case 2 -> many.append("print ").append(i).append(".5 < ").append(i + 1).append(" == !false;\n");
+                default -> many.append(i).append(".75 / 2;\n");
+            }
+        }
+        corpus.put("60000 statements", many.toString());
+        corpus.put("60000 statements, then an error", many + "print 1 +\n  \"one\";\n");
+        return corpus;
+    }
+
+    private static boolean fails(String source) {
+        return run(source, "tree", false).exitCode() != 0;
+    }
+}
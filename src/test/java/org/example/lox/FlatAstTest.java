@@ -0,0 +1,74 @@
+package org.example.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FlatAstTest {
+    private static final String PROGRAM = """
+            print 1 + 2 * 3 - 4 / 5;
+            print -(1 + 2) * (1 + 2);
+            print !true == !!nil;
+            print "a" + "b"
+                + "c";
+            1 < 2; 3 >= 4; 5 != 6;
+            print ((((-0))));
+            print "x" == nil;
+            """;
+
+    @Test
+    void toStatementsRebuildsTheTreeItFlattened() throws IOException {
+        List<Stmt> statements = parse(PROGRAM, false);
+        FlatAst flat = FlatAst.of(statements);
+        assertEquals(statements.size(), flat.statementCount());
+        assertEquals(json(statements), json(flat.toStatements()));
+    }
+
+    @Test
+    void toStatementsSharesWhatSharingFlattened() throws IOException {
+        List<Stmt> statements = parse(PROGRAM, true);
+        List<Stmt> rebuilt = FlatAst.sharing(statements).toStatements();
+        assertEquals(json(statements), json(rebuilt));
+        var product = (Expr.Binary) ((Stmt.Print) rebuilt.get(1)).expression;
+        assertSame(((Expr.Unary) product.left).right, product.right);
+    }
+
+    @Test
+    void toExprRebuildsOneSubtree() throws IOException {
+        List<Stmt> statements = parse("print 1; print (2 + 3) * 4;", false);
+        FlatAst flat = FlatAst.of(statements);
+        // Node 0 is the first statement's 1; the second's are 2, 3, 2 + 3, its grouping, 4 and the product.
+        var sum = (Expr.Binary) flat.toExpr(3);
+        assertEquals("(+ 2 3)", sexpr(sum));
+        assertEquals(json(statements), json(List.of(new Stmt.Print(flat.toExpr(0)),
+                new Stmt.Print(flat.toExpr(flat.statements[FlatAst.STATEMENT_SIZE + FlatAst.ROOT])))));
+    }
+
+    private static List<Stmt> parse(String source, boolean hashCons) {
+        var quiet = new PrintStream(OutputStream.nullOutputStream());
+        var session = new Session(line -> {}, ErrorCollector.printingTo(System.err), quiet, "iterative", false,
+                hashCons, null, null);
+        List<Stmt> statements = session.parse(source);
+        assertFalse(session.hadError());
+        return statements;
+    }
+
+    private static String json(List<Stmt> statements) throws IOException {
+        var out = new StringBuilder();
+        new AstDumper(out, AstDumper.Format.JSON).dump(statements);
+        return out.toString();
+    }
+
+    private static String sexpr(Expr expr) throws IOException {
+        var out = new StringBuilder();
+        new AstDumper(out, AstDumper.Format.SEXPR).dump(expr);
+        return out.toString();
+    }
+}